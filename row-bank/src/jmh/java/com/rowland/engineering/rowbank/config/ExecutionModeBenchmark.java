@@ -0,0 +1,122 @@
+package com.rowland.engineering.rowbank.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load comparison of the two execution modes behind spring.threads.virtual.enabled.
+ * "platform" mirrors Tomcat's default 200-thread pool; "virtual" runs one virtual
+ * thread per request. A share of requests also hash like a signin. Scores are
+ * requests per second.
+ * <p>
+ * With {@code io=jdbc} each request waits on MySQL through a Hikari pool and the
+ * application's driver, using {@code select sleep(?)} so no schema is needed. Point
+ * it at a server with {@code -Dbenchmark.jdbc.url}, {@code -Dbenchmark.jdbc.username}
+ * and {@code -Dbenchmark.jdbc.password} (defaults: the local rowbank database). With
+ * {@code io=sleep} the request sleeps instead, which never pins a carrier, so the gap
+ * between the two is what driver pinning costs virtual threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ExecutionModeBenchmark {
+
+    private static final int REQUESTS = 2_000;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"jdbc", "sleep"})
+    public String io;
+
+    // Database latency per request.
+    @Param({"10"})
+    public int blockingMillis;
+
+    // One request in this many also checks a password, as signin does.
+    @Param({"20"})
+    public int hashEvery;
+
+    @Param({"50"})
+    public int poolSize;
+
+    private ExecutorService executor;
+    private HikariDataSource dataSource;
+    private BCryptPasswordEncoder encoder;
+    private String encoded;
+
+    @Setup
+    public void setUp() {
+        executor = "virtual".equals(mode)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(200);
+        if ("jdbc".equals(io)) {
+            HikariConfig config = new HikariConfig();
+            config.setJdbcUrl(System.getProperty("benchmark.jdbc.url", "jdbc:mysql://localhost:3306/rowbank"));
+            config.setUsername(System.getProperty("benchmark.jdbc.username", "root"));
+            config.setPassword(System.getProperty("benchmark.jdbc.password", ""));
+            config.setMaximumPoolSize(poolSize);
+            config.setMinimumIdle(poolSize);
+            dataSource = new HikariDataSource(config);
+        }
+        encoder = new BCryptPasswordEncoder(10);
+        encoded = encoder.encode("correct horse battery staple");
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public int serveRequests() throws Exception {
+        List<Future<Boolean>> responses = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            boolean signin = i % hashEvery == 0;
+            responses.add(executor.submit(() -> handle(signin)));
+        }
+        int ok = 0;
+        for (Future<Boolean> response : responses) {
+            if (response.get()) {
+                ok++;
+            }
+        }
+        return ok;
+    }
+
+    private boolean handle(boolean signin) throws InterruptedException, SQLException {
+        if (dataSource != null) {
+            query();
+        } else {
+            Thread.sleep(blockingMillis);
+        }
+        return !signin || encoder.matches("correct horse battery staple", encoded);
+    }
+
+    private void query() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("select sleep(?)")) {
+            statement.setDouble(1, blockingMillis / 1000.0);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.rowland.engineering.rowbank.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class TransactionBenchmark {
+
+    private Transaction transaction;
+
+    @Setup
+    public void setUp() {
+        transaction = Transaction.builder()
+                .transactionType(TransactionType.CREDIT)
+                .amount(BigDecimal.valueOf(100))
+                .timestamp(LocalDateTime.of(2024, 1, 15, 9, 30))
+                .build();
+    }
+
+    @Benchmark
+    public String getFormattedTimestamp() {
+        return transaction.getFormattedTimestamp();
+    }
+}
@@ -0,0 +1,58 @@
+package com.rowland.engineering.rowbank.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class JwtTokenProviderBenchmark {
+
+    private static final String SECRET = "6B58703273357638792F423F4428472B4B6250655368566D597133743677397A244326462948404D635166546A576E5A7234753778214125442A472D4B614E64";
+    private static final int EXPIRATION_MS = 604800000;
+
+    private JwtTokenProvider cachingProvider;
+    private JwtTokenProvider uncachedProvider;
+    private Authentication authentication;
+    private String token;
+    private String otherToken;
+    private boolean flip;
+
+    @Setup
+    public void setUp() {
+        cachingProvider = new JwtTokenProvider(SECRET, EXPIRATION_MS, 10000, new SimpleMeterRegistry());
+        // A single-entry cache alternating between two tokens always misses, exposing the full parse cost.
+        uncachedProvider = new JwtTokenProvider(SECRET, EXPIRATION_MS, 1, new SimpleMeterRegistry());
+
+        UserPrincipal principal = new UserPrincipal(1L, "Ada", "Lovelace", null, "ada", "ada@example.com",
+                "password", List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        authentication = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+        token = cachingProvider.generateToken(authentication);
+        UserPrincipal other = new UserPrincipal(2L, "Alan", "Turing", null, "alan", "alan@example.com",
+                "password", List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        otherToken = cachingProvider.generateToken(
+                new UsernamePasswordAuthenticationToken(other, null, other.getAuthorities()));
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return cachingProvider.generateToken(authentication);
+    }
+
+    @Benchmark
+    public boolean validateTokenCached() {
+        return cachingProvider.validateToken(token);
+    }
+
+    @Benchmark
+    public boolean validateTokenUncached() {
+        flip = !flip;
+        return uncachedProvider.validateToken(flip ? token : otherToken);
+    }
+}
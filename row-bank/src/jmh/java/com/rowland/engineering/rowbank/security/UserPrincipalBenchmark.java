@@ -0,0 +1,31 @@
+package com.rowland.engineering.rowbank.security;
+
+import com.rowland.engineering.rowbank.model.Role;
+import com.rowland.engineering.rowbank.model.RoleName;
+import com.rowland.engineering.rowbank.model.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class UserPrincipalBenchmark {
+
+    private User user;
+
+    @Setup
+    public void setUp() {
+        user = new User("Ada", "Lovelace", new Date(), "ada", "ada@example.com", "password", BigDecimal.TEN);
+        user.setId(1L);
+        user.setRoles(Set.of(new Role(RoleName.ROLE_USER)));
+    }
+
+    @Benchmark
+    public UserPrincipal create() {
+        return UserPrincipal.create(user);
+    }
+}
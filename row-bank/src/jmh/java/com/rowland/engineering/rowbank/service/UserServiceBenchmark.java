@@ -0,0 +1,35 @@
+package com.rowland.engineering.rowbank.service;
+
+import com.rowland.engineering.rowbank.dto.UserProfileRow;
+import com.rowland.engineering.rowbank.dto.UserResponse;
+import com.rowland.engineering.rowbank.model.RoleName;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class UserServiceBenchmark {
+
+    private List<UserProfileRow> rows;
+
+    @Setup
+    public void setUp() {
+        Date dateOfBirth = new Date();
+        Instant updatedAt = Instant.now();
+        rows = List.of(
+                new UserProfileRow(1L, "Ada", "Lovelace", "ada", "0012345678", dateOfBirth,
+                        "ada@example.com", updatedAt, RoleName.ROLE_USER),
+                new UserProfileRow(1L, "Ada", "Lovelace", "ada", "0012345678", dateOfBirth,
+                        "ada@example.com", updatedAt, RoleName.ROLE_ADMIN));
+    }
+
+    @Benchmark
+    public UserResponse findUserDetailsMapping() {
+        return UserService.toUserResponse(rows);
+    }
+}
@@ -0,0 +1,29 @@
+package com.rowland.engineering.rowbank.config;
+
+import com.rowland.engineering.rowbank.utils.BoundedCache;
+
+/**
+ * Remembers which users wrote recently. While a user's window is open their
+ * read-only work is kept on the primary, so they never read a replica that has not
+ * yet applied their own write.
+ */
+public class ReadYourWritesWindow {
+
+    private final BoundedCache<Long, Boolean> recentWriters;
+    private final long windowMs;
+
+    public ReadYourWritesWindow(long windowMs, int maxUsers) {
+        this.windowMs = windowMs;
+        this.recentWriters = new BoundedCache<>(maxUsers, windowMs);
+    }
+
+    public void markWrite(Long userId) {
+        if (windowMs > 0) {
+            recentWriters.put(userId, Boolean.TRUE);
+        }
+    }
+
+    public boolean isOpen(Long userId) {
+        return windowMs > 0 && recentWriters.get(userId) != null;
+    }
+}
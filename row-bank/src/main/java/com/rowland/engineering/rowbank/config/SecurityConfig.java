@@ -1,9 +1,11 @@
 package com.rowland.engineering.rowbank.config;
 
 
+import com.rowland.engineering.rowbank.security.BoundedPasswordEncoder;
 import com.rowland.engineering.rowbank.security.CustomUserDetailsService;
 import com.rowland.engineering.rowbank.security.JwtAuthenticationEntryPoint;
 import com.rowland.engineering.rowbank.security.JwtAuthenticationFilter;
+import com.rowland.engineering.rowbank.security.LoginAdmissionFilter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -16,8 +18,6 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
@@ -29,12 +29,15 @@ public class SecurityConfig {
     private final CustomUserDetailsService customUserDetailsService;
     private final JwtAuthenticationEntryPoint unauthorizedHandler;
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final LoginAdmissionFilter loginAdmissionFilter;
+    private final BoundedPasswordEncoder passwordEncoder;
 
     @Bean
     public AuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider daoAuthProvider = new DaoAuthenticationProvider();
         daoAuthProvider.setUserDetailsService(customUserDetailsService);
-        daoAuthProvider.setPasswordEncoder(passwordEncoder());
+        daoAuthProvider.setPasswordEncoder(passwordEncoder);
+        daoAuthProvider.setUserDetailsPasswordService(customUserDetailsService);
         return daoAuthProvider;
     }
 
@@ -43,11 +46,6 @@ public class SecurityConfig {
         return config.getAuthenticationManager();
     }
 
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
-    }
-
 
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
@@ -66,6 +64,7 @@ public class SecurityConfig {
                         .permitAll()
                         .anyRequest().authenticated());
         http.authenticationProvider(authenticationProvider());
+        http.addFilterBefore(loginAdmissionFilter, UsernamePasswordAuthenticationFilter.class);
         http.addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
         return http.build();
     }
@@ -0,0 +1,112 @@
+package com.rowland.engineering.rowbank.config;
+
+import com.rowland.engineering.rowbank.service.shard.Shard;
+import com.rowland.engineering.rowbank.service.shard.ShardDirectory;
+import com.rowland.engineering.rowbank.service.shard.ShardRebalancer;
+import com.rowland.engineering.rowbank.service.shard.ShardedAccountStore;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hash-sharded account storage, one pool per entry in {@code app.sharding.shard-urls}
+ * plus one for the directory. Shard ids are positions in that list, so new shards
+ * must be appended. Only active when shards are configured.
+ */
+@Configuration
+@ConditionalOnProperty("app.sharding.shard-urls")
+public class ShardingConfig {
+
+    @Value("${app.sharding.shard-urls}")
+    private List<String> shardUrls;
+
+    @Value("${app.sharding.directory-url}")
+    private String directoryUrl;
+
+    @Value("${app.sharding.username:${spring.datasource.username:}}")
+    private String username;
+
+    @Value("${app.sharding.password:${spring.datasource.password:}}")
+    private String password;
+
+    @Value("${app.sharding.maximum-pool-size:10}")
+    private int maximumPoolSize;
+
+    @Value("${app.sharding.transfer-timeout-ms:30000}")
+    private long transferTimeoutMs;
+
+    @Value("${app.sharding.rebalance-on-startup:false}")
+    private boolean rebalanceOnStartup;
+
+    private final MeterRegistry meterRegistry;
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    public ShardingConfig(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Bean
+    public ShardDirectory shardDirectory() {
+        ShardDirectory directory = new ShardDirectory(pool("shard-directory", directoryUrl));
+        directory.createSchema();
+        return directory;
+    }
+
+    @Bean
+    public ShardedAccountStore shardedAccountStore() {
+        List<Shard> shards = new ArrayList<>();
+        for (int i = 0; i < shardUrls.size(); i++) {
+            Shard shard = new Shard(i, pool("shard-" + i, shardUrls.get(i).trim()));
+            shard.createSchema();
+            shards.add(shard);
+        }
+        return new ShardedAccountStore(shardDirectory(), shards);
+    }
+
+    @Bean
+    public ShardRebalancer shardRebalancer() {
+        return new ShardRebalancer(shardDirectory(), shardedAccountStore());
+    }
+
+    // After a shard is appended to the list, accounts the ring now places on it are moved there.
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebalanceOnStartup() {
+        if (rebalanceOnStartup) {
+            shardRebalancer().rebalance();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.sharding.recovery-interval-ms:10000}",
+            initialDelayString = "${app.sharding.recovery-interval-ms:10000}")
+    public void recoverTransfers() {
+        shardedAccountStore().getCoordinator().recover(Instant.now().minusMillis(transferTimeoutMs));
+    }
+
+    @PreDestroy
+    public void close() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+    private HikariDataSource pool(String name, String url) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName(name);
+        pool.setJdbcUrl(url);
+        pool.setUsername(username);
+        pool.setPassword(password);
+        pool.setMaximumPoolSize(maximumPoolSize);
+        pool.setMetricRegistry(meterRegistry);
+        pools.add(pool);
+        return pool;
+    }
+}
@@ -4,6 +4,7 @@ package com.rowland.engineering.rowbank.controller;
 import com.rowland.engineering.rowbank.dto.ApiResponse;
 import com.rowland.engineering.rowbank.dto.JwtAuthenticationResponse;
 import com.rowland.engineering.rowbank.dto.LoginRequest;
+import com.rowland.engineering.rowbank.dto.RefreshTokenRequest;
 import com.rowland.engineering.rowbank.dto.RegisterRequest;
 import com.rowland.engineering.rowbank.exception.AppException;
 import com.rowland.engineering.rowbank.model.Role;
@@ -12,10 +13,16 @@ import com.rowland.engineering.rowbank.model.User;
 import com.rowland.engineering.rowbank.repository.RoleRepository;
 import com.rowland.engineering.rowbank.repository.UserRepository;
 import com.rowland.engineering.rowbank.security.JwtTokenProvider;
+import com.rowland.engineering.rowbank.security.RefreshTokenService;
+import com.rowland.engineering.rowbank.security.TokenRevocationService;
+import com.rowland.engineering.rowbank.security.UserPrincipal;
+import com.rowland.engineering.rowbank.service.AccountNumberAllocator;
+import com.rowland.engineering.rowbank.utils.OperationTimer;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
-import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -28,12 +35,10 @@ import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.net.URI;
 import java.util.Collections;
-import java.util.Random;
 
 @CrossOrigin("*")
 @RestController
 @RequestMapping("/api/auth")
-@RequiredArgsConstructor
 @Tag(name = "Authentication - Registration /Sign In")
 public class AuthController {
 
@@ -46,13 +51,99 @@ public class AuthController {
     private final PasswordEncoder passwordEncoder;
     private final JwtTokenProvider tokenProvider;
 
-
+    private final AccountNumberAllocator accountNumberAllocator;
+
+    private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationService tokenRevocationService;
+
+    private final OperationTimer signinTimer;
+    private final OperationTimer signupTimer;
+
+    public AuthController(AuthenticationManager authenticationManager,
+                          UserRepository userRepository,
+                          RoleRepository roleRepository,
+                          PasswordEncoder passwordEncoder,
+                          JwtTokenProvider tokenProvider,
+                          AccountNumberAllocator accountNumberAllocator,
+                          RefreshTokenService refreshTokenService,
+                          TokenRevocationService tokenRevocationService,
+                          MeterRegistry meterRegistry) {
+        this.authenticationManager = authenticationManager;
+        this.userRepository = userRepository;
+        this.roleRepository = roleRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.tokenProvider = tokenProvider;
+        this.accountNumberAllocator = accountNumberAllocator;
+        this.refreshTokenService = refreshTokenService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.signinTimer = OperationTimer.register(meterRegistry, "web", "authenticateUser");
+        this.signupTimer = OperationTimer.register(meterRegistry, "web", "registerUser");
+    }
 
     @Operation(
             summary = "Enables user log in - Users can user either username or email address"
     )
     @PostMapping("/signin")
     public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+        long start = System.nanoTime();
+        try {
+            ResponseEntity<?> response = signIn(loginRequest);
+            signinTimer.success(start);
+            return response;
+        } catch (RuntimeException ex) {
+            signinTimer.error(start);
+            throw ex;
+        }
+    }
+
+
+    @Operation(
+            summary = "Exchanges a refresh token for a new access token and a new refresh token",
+            description = "Each refresh token can be used once. Reusing one revokes every token issued from the same sign-in"
+    )
+    @PostMapping("/refresh")
+    public ResponseEntity<JwtAuthenticationResponse> refreshToken(@Valid @RequestBody RefreshTokenRequest refreshRequest) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshRequest.getRefreshToken());
+        return ResponseEntity.ok(new JwtAuthenticationResponse(tokenProvider.generateToken(rotation.userId()),
+                rotation.refreshToken(), tokenProvider.getJwtExpirationInMs()));
+    }
+
+    @Operation(
+            summary = "Revokes the presented access token and, when given, the refresh token's whole family"
+    )
+    @PostMapping("/logout")
+    public ResponseEntity<ApiResponse> logout(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+                                              @RequestBody(required = false) RefreshTokenRequest refreshRequest) {
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            tokenProvider.verifyToken(authorization.substring(7)).ifPresent(tokenRevocationService::revoke);
+        }
+        if (refreshRequest != null && refreshRequest.getRefreshToken() != null) {
+            refreshTokenService.revoke(refreshRequest.getRefreshToken());
+        }
+        return ResponseEntity.ok(new ApiResponse(true, "Logged out"));
+    }
+
+    @Operation(
+            summary = "Enables user registration - To sign up with admin role, add `row` to email field."
+    )
+    @PostMapping("/signup")
+    public ResponseEntity<?> registerUser(@Valid @RequestBody RegisterRequest registerRequest) {
+        long start = System.nanoTime();
+        try {
+            ResponseEntity<?> response = signUp(registerRequest);
+            if (response.getStatusCode().is2xxSuccessful()) {
+                signupTimer.success(start);
+            } else {
+                signupTimer.error(start);
+            }
+            return response;
+        } catch (RuntimeException ex) {
+            signupTimer.error(start);
+            throw ex;
+        }
+    }
+
+    private ResponseEntity<?> signIn(LoginRequest loginRequest) {
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(
                         loginRequest.getUsernameOrEmail(),
@@ -61,15 +152,12 @@ public class AuthController {
         );
         SecurityContextHolder.getContext().setAuthentication(authentication);
         String jwt = tokenProvider.generateToken(authentication);
-        return ResponseEntity.ok(new JwtAuthenticationResponse(jwt));
+        String refreshToken = refreshTokenService.issue(((UserPrincipal) authentication.getPrincipal()).getId());
+        return ResponseEntity.ok(new JwtAuthenticationResponse(jwt, refreshToken, tokenProvider.getJwtExpirationInMs()));
     }
 
 
-    @Operation(
-            summary = "Enables user registration - To sign up with admin role, add `row` to email field."
-    )
-    @PostMapping("/signup")
-    public ResponseEntity<?> registerUser(@Valid @RequestBody RegisterRequest registerRequest) {
+    private ResponseEntity<?> signUp(RegisterRequest registerRequest) {
         if(userRepository.existsByUsername(registerRequest.getUsername())) {
             return new ResponseEntity<>(new ApiResponse(false, "Username is already taken!"),
                     HttpStatus.BAD_REQUEST);
@@ -79,7 +167,7 @@ public class AuthController {
             return new ResponseEntity<>(new ApiResponse(false, "Email Address already in use!"),
                     HttpStatus.BAD_REQUEST);
         }
-        String accountNumber = generateAccountNumber();
+        String accountNumber = accountNumberAllocator.nextAccountNumber();
         User user = new User(registerRequest.getFirstName(), registerRequest.getLastName(),
                 registerRequest.getDateOfBirth(), registerRequest.getUsername(),
                 registerRequest.getEmail(), registerRequest.getPassword(),
@@ -113,12 +201,4 @@ public class AuthController {
     }
 
 
-
-    private String generateAccountNumber() {
-        Random random = new Random();
-        int remainingDigits = random.nextInt(100000000);
-        return String.format("00%08d", remainingDigits);
-    }
-
-
 }
@@ -1,4 +1,29 @@
 package com.rowland.engineering.rowbank.controller;
 
+import com.rowland.engineering.rowbank.dto.TransferRequest;
+import com.rowland.engineering.rowbank.dto.TransferResponse;
+import com.rowland.engineering.rowbank.security.CurrentUser;
+import com.rowland.engineering.rowbank.security.UserPrincipal;
+import com.rowland.engineering.rowbank.service.TransferService;
+import io.swagger.v3.oas.annotations.Operation;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("api/bank")
+@RequiredArgsConstructor
 public class BankController {
+    private final TransferService transferService;
+
+    @Operation(
+            description = "Debits the signed-in user and credits the account with the given account number",
+            summary = "Transfer money to another account"
+    )
+    @PostMapping("/transfers")
+    public ResponseEntity<TransferResponse> transfer(@Valid @RequestBody TransferRequest request,
+                                                     @CurrentUser UserPrincipal currentUser) {
+        return ResponseEntity.ok(transferService.transfer(currentUser.getId(), request));
+    }
 }
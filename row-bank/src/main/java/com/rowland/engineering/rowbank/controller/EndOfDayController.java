@@ -0,0 +1,42 @@
+package com.rowland.engineering.rowbank.controller;
+
+import com.rowland.engineering.rowbank.dto.EndOfDayStatus;
+import com.rowland.engineering.rowbank.service.eod.EndOfDayJob;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/admin/end-of-day")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+@Tag(name = "Admin - End of day")
+public class EndOfDayController {
+    private final EndOfDayJob endOfDayJob;
+
+    @Operation(
+            description = "Posts interest and fees for the business date, yesterday by default. "
+                    + "An interrupted run resumes where it stopped; a completed one is not repeated.",
+            summary = "Starts the end-of-day run"
+    )
+    @PostMapping("/runs")
+    public ResponseEntity<EndOfDayStatus> startRun(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate businessDate) {
+        LocalDate date = businessDate != null ? businessDate : LocalDate.now().minusDays(1);
+        return ResponseEntity.accepted().body(endOfDayJob.start(date));
+    }
+
+    @Operation(
+            summary = "Returns the progress of the current or last end-of-day run"
+    )
+    @GetMapping("/runs/current")
+    public ResponseEntity<EndOfDayStatus> currentRun() {
+        return ResponseEntity.ok(endOfDayJob.status());
+    }
+}
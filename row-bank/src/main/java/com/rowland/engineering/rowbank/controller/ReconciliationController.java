@@ -0,0 +1,40 @@
+package com.rowland.engineering.rowbank.controller;
+
+import com.rowland.engineering.rowbank.dto.ReconciliationReport;
+import com.rowland.engineering.rowbank.dto.ReconciliationSummary;
+import com.rowland.engineering.rowbank.service.reconciliation.BalanceReconciler;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/admin/reconciliation")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+@Tag(name = "Admin - Balance reconciliation")
+public class ReconciliationController {
+    private final BalanceReconciler balanceReconciler;
+
+    @Operation(
+            description = "Accounts whose stored balance differs from their opening balance plus transactions, "
+                    + "most recently checked first, with the last run's figures",
+            summary = "Returns the balance reconciliation report"
+    )
+    @GetMapping
+    public ResponseEntity<ReconciliationReport> report(@RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(balanceReconciler.report(Math.max(1, Math.min(limit, 1000))));
+    }
+
+    @Operation(
+            description = "Recomputes every account from all of its transactions; incremental runs build on the result",
+            summary = "Starts a full reconciliation sweep"
+    )
+    @PostMapping("/full-sweep")
+    public ResponseEntity<Void> startFullSweep() {
+        balanceReconciler.start(ReconciliationSummary.Mode.FULL);
+        return ResponseEntity.accepted().build();
+    }
+}
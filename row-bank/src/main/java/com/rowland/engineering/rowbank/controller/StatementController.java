@@ -0,0 +1,137 @@
+package com.rowland.engineering.rowbank.controller;
+
+import com.rowland.engineering.rowbank.dto.StatementExport;
+import com.rowland.engineering.rowbank.service.statement.StatementExportService;
+import com.rowland.engineering.rowbank.service.statement.StatementFormat;
+import com.rowland.engineering.rowbank.service.statement.StatementService;
+import io.swagger.v3.oas.annotations.Operation;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("api/users")
+@RequiredArgsConstructor
+public class StatementController {
+
+    // Tomcat serves a file named in these request attributes with sendfile, straight from the page cache to the socket.
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final StatementService statementService;
+    private final StatementExportService statementExportService;
+
+    @Operation(
+            description = "Streams a statement with opening, running and closing balances while it is rendered",
+            summary = "Downloads an account statement as CSV or PDF"
+    )
+    @PreAuthorize("#userId == principal.id or hasRole('ADMIN')")
+    @GetMapping("/{id}/statement")
+    public ResponseEntity<StreamingResponseBody> downloadStatement(
+            @PathVariable(value = "id") Long userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "CSV") StatementFormat format) {
+        StatementService.validatePeriod(from, to);
+        StreamingResponseBody body = output -> statementService.writeStatement(userId, from, to, format, output);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, attachment("statement." + format.getExtension()))
+                .body(body);
+    }
+
+    @Operation(
+            description = "Renders the statement in the background; poll the returned location, then fetch its file",
+            summary = "Starts a statement export for long periods"
+    )
+    @PreAuthorize("#userId == principal.id or hasRole('ADMIN')")
+    @PostMapping("/{id}/statement/exports")
+    public ResponseEntity<StatementExport> exportStatement(
+            @PathVariable(value = "id") Long userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "CSV") StatementFormat format) {
+        StatementService.validatePeriod(from, to);
+        StatementExport export = statementExportService.submit(userId, from, to, format);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/users/" + userId + "/statement/exports/" + export.getExportId()))
+                .body(export);
+    }
+
+    @Operation(
+            summary = "Returns the status of a statement export"
+    )
+    @PreAuthorize("#userId == principal.id or hasRole('ADMIN')")
+    @GetMapping("/{id}/statement/exports/{exportId}")
+    public ResponseEntity<StatementExport> getStatementExport(@PathVariable(value = "id") Long userId,
+                                                              @PathVariable String exportId) {
+        return ResponseEntity.of(statementExportService.status(userId, exportId));
+    }
+
+    @Operation(
+            summary = "Downloads a completed statement export"
+    )
+    @PreAuthorize("#userId == principal.id or hasRole('ADMIN')")
+    @GetMapping("/{id}/statement/exports/{exportId}/file")
+    public void downloadStatementExport(@PathVariable(value = "id") Long userId,
+                                        @PathVariable String exportId,
+                                        HttpServletRequest request,
+                                        HttpServletResponse response) throws IOException {
+        Optional<StatementExport> export = statementExportService.status(userId, exportId);
+        Optional<Path> file = statementExportService.file(userId, exportId);
+        if (export.isEmpty() || file.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        StatementFormat format = export.get().getFormat();
+        response.setContentType(format.getMediaType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, attachment("statement." + format.getExtension()));
+        transferFile(file.get(), request, response);
+    }
+
+    /**
+     * Hands the file to the container's sendfile support when it has it; otherwise
+     * copies it with {@link FileChannel#transferTo} in small chunks rather than
+     * reading it into memory.
+     */
+    private static void transferFile(Path file, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            long size = channel.size();
+            response.setContentLengthLong(size);
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+                request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, 0L);
+                request.setAttribute(SENDFILE_END, size);
+                return;
+            }
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            for (long position = 0; position < size; ) {
+                position += channel.transferTo(position, size - position, target);
+            }
+        }
+    }
+
+    private static String attachment(String filename) {
+        return ContentDisposition.attachment().filename(filename).build().toString();
+    }
+}
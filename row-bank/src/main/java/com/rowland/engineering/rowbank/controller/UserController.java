@@ -2,39 +2,120 @@ package com.rowland.engineering.rowbank.controller;
 
 
 import com.rowland.engineering.rowbank.dto.*;
+import com.rowland.engineering.rowbank.model.TransactionType;
+import com.rowland.engineering.rowbank.service.TransactionHistoryService;
 import com.rowland.engineering.rowbank.service.UserService;
+import com.rowland.engineering.rowbank.service.deposit.AsyncDepositPipeline;
 import io.swagger.v3.oas.annotations.Operation;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.Optional;
+import java.net.URI;
+import java.time.LocalDateTime;
 
 @RestController
 @RequestMapping("api/users")
 @RequiredArgsConstructor
 public class UserController {
     private final UserService userService;
+    private final TransactionHistoryService transactionHistoryService;
+    private final AsyncDepositPipeline asyncDepositPipeline;
     @Operation(
-            summary = "Make deposit into user personal account"
+            summary = "Make deposit into user personal account",
+            description = "Retries that repeat the Idempotency-Key header get the original response without a second credit"
     )
     @PatchMapping("/make-deposit/{userId}")
-    public ResponseEntity<ApiResponse> depositIntoUserAccount(@Valid @RequestBody MakeDeposit deposit, @PathVariable Long userId) {
-        userService.makeDeposit(deposit, userId);
-        return ResponseEntity.ok(new ApiResponse(true,
-                "Account successfully credited with: #"+ deposit.getDepositAmount()));
+    public ResponseEntity<ApiResponse> depositIntoUserAccount(@Valid @RequestBody MakeDeposit deposit, @PathVariable Long userId,
+                                                              @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        return ResponseEntity.ok(userService.makeDeposit(deposit, userId, idempotencyKey));
     }
 
     @Operation(
-            description = "Get user by Id",
+            summary = "Queue a deposit into user personal account",
+            description = "Returns 202 with a tracking id once the deposit is durably accepted, or 429 when the queue is full"
+    )
+    @PatchMapping("/make-deposit/{userId}/async")
+    public ResponseEntity<DepositStatus> depositIntoUserAccountAsync(@Valid @RequestBody MakeDeposit deposit, @PathVariable Long userId) {
+        String trackingId = asyncDepositPipeline.submit(userId, deposit.getDepositAmount());
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/users/" + userId + "/deposits/" + trackingId))
+                .body(new DepositStatus(trackingId, DepositStatus.State.ACCEPTED, null));
+    }
+
+    @Operation(
+            summary = "Returns the status of a queued deposit"
+    )
+    @PreAuthorize("#userId == principal.id or hasRole('ADMIN')")
+    @GetMapping("/{id}/deposits/{trackingId}")
+    public ResponseEntity<DepositStatus> getDepositStatus(@PathVariable(value = "id") Long userId,
+                                                          @PathVariable String trackingId) {
+        return ResponseEntity.of(asyncDepositPipeline.status(userId, trackingId));
+    }
+
+    @Operation(
+            description = "Get user by Id. Send the ETag back as If-None-Match to get 304 while nothing changed",
             summary = "Returns user by providing user id"
     )
     @GetMapping("/{id}")
-    public Optional<UserResponse> getUserById(@PathVariable(value = "id") Long userId) {
-        return userService.findUserDetails(userId);
+    public ResponseEntity<UserResponse> getUserById(@PathVariable(value = "id") Long userId, WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null) {
+            ResourceVersion current = userService.findUserVersion(userId);
+            if (request.checkNotModified(current.etag(), lastModifiedMillis(current))) {
+                return null;
+            }
+        }
+        UserResponse userDetail = userService.findUserDetails(userId).orElseThrow();
+        ResourceVersion version = userService.versionOf(userDetail);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(version.etag());
+        if (version.lastModified() != null) {
+            response.lastModified(version.lastModified());
+        }
+        return response.body(userDetail);
     }
 
+    @Operation(
+            description = "Pages through a user's transactions, newest first",
+            summary = "Returns one page of transaction history; pass nextCursor back as cursor for the next page"
+    )
+    @PreAuthorize("#userId == principal.id or hasRole('ADMIN')")
+    @GetMapping("/{id}/transactions")
+    public TransactionPage getTransactionHistory(
+            @PathVariable(value = "id") Long userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) TransactionType type,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        return transactionHistoryService.findHistory(userId, from, to, type, cursor, size);
+    }
 
+    @Operation(
+            description = "Streams a user's transactions, newest first, as newline-delimited JSON",
+            summary = "Streams the full transaction history without paging"
+    )
+    @PreAuthorize("#userId == principal.id or hasRole('ADMIN')")
+    @GetMapping(value = "/{id}/transactions/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamTransactionHistory(
+            @PathVariable(value = "id") Long userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) TransactionType type) {
+        StreamingResponseBody body = output -> transactionHistoryService.streamHistory(userId, from, to, type, output);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
 
+    private static long lastModifiedMillis(ResourceVersion version) {
+        return version.lastModified() == null ? -1 : version.lastModified().toEpochMilli();
+    }
 }
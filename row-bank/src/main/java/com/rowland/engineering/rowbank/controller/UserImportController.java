@@ -0,0 +1,40 @@
+package com.rowland.engineering.rowbank.controller;
+
+
+import com.rowland.engineering.rowbank.dto.ImportReport;
+import com.rowland.engineering.rowbank.service.UserImportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/admin/users")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+@Tag(name = "Admin - Bulk customer onboarding")
+public class UserImportController {
+    private final UserImportService userImportService;
+
+    @Operation(
+            summary = "Imports customers from newline-delimited JSON, one RegisterRequest per line"
+    )
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    public ResponseEntity<ImportReport> importNdjson(InputStream body) {
+        return ResponseEntity.ok(userImportService.importNdjson(body));
+    }
+
+    @Operation(
+            summary = "Imports customers from CSV with a header row naming the RegisterRequest fields"
+    )
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<ImportReport> importCsv(InputStream body) {
+        return ResponseEntity.ok(userImportService.importCsv(body));
+    }
+}
@@ -0,0 +1,20 @@
+package com.rowland.engineering.rowbank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DepositStatus {
+    private String trackingId;
+    private State status;
+    private String message;
+
+    public enum State {
+        ACCEPTED,
+        COMPLETED,
+        FAILED
+    }
+}
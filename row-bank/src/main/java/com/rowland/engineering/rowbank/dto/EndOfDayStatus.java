@@ -0,0 +1,23 @@
+package com.rowland.engineering.rowbank.dto;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+public record EndOfDayStatus(LocalDate businessDate,
+                             State state,
+                             int chunks,
+                             int chunksCompleted,
+                             int chunksFailed,
+                             long accountsPosted,
+                             long accountsSkipped,
+                             Instant startedAt,
+                             Instant finishedAt,
+                             double accountsPerSecond) {
+
+    public enum State {
+        IDLE,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
@@ -0,0 +1,47 @@
+package com.rowland.engineering.rowbank.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@code failed} counts every rejected row; only the first {@code maxErrors} of
+ * them are listed in {@code errors}, and {@code errorsTruncated} says whether any
+ * were left out.
+ */
+@Data
+@NoArgsConstructor
+public class ImportReport {
+    private long totalRows;
+    private long imported;
+    private long failed;
+    private boolean errorsTruncated;
+    private List<RowError> errors = new ArrayList<>();
+    @JsonIgnore
+    private int maxErrors = Integer.MAX_VALUE;
+
+    public ImportReport(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    public void addError(long line, String username, List<String> messages) {
+        failed++;
+        if (errors.size() < maxErrors) {
+            errors.add(new RowError(line, username, messages));
+        } else {
+            errorsTruncated = true;
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class RowError {
+        private long line;
+        private String username;
+        private List<String> messages;
+    }
+}
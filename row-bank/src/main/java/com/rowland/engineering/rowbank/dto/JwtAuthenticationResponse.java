@@ -6,8 +6,16 @@ import lombok.Data;
 public class JwtAuthenticationResponse {
     private String accessToken;
     private String tokenType = "Bearer";
+    private String refreshToken;
+    private long expiresInMs;
 
     public JwtAuthenticationResponse(String accessToken) {
         this.accessToken = accessToken;
     }
+
+    public JwtAuthenticationResponse(String accessToken, String refreshToken, long expiresInMs) {
+        this.accessToken = accessToken;
+        this.refreshToken = refreshToken;
+        this.expiresInMs = expiresInMs;
+    }
 }
@@ -0,0 +1,16 @@
+package com.rowland.engineering.rowbank.dto;
+
+import com.rowland.engineering.rowbank.model.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+/**
+ * A ledger event as handed to an outbox sink. Delivery is at least once; within an
+ * account {@code eventId} only grows, so consumers drop anything at or below the
+ * last id they processed for that account.
+ */
+public record OutboxMessage(Long eventId, Long accountId, TransactionType transactionType, BigDecimal amount,
+                            String description, String reference, LocalDateTime occurredAt, Instant createdAt) {
+}
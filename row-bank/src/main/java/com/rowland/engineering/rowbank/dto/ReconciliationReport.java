@@ -0,0 +1,22 @@
+package com.rowland.engineering.rowbank.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+public record ReconciliationReport(ReconciliationSummary lastRun,
+                                   long mismatchedAccounts,
+                                   BigDecimal totalDifference,
+                                   List<Mismatch> mismatches) {
+
+    /**
+     * {@code difference} is the stored balance minus what the account's opening
+     * balance and transactions add up to.
+     */
+    public record Mismatch(Long userId,
+                           BigDecimal balance,
+                           BigDecimal expectedBalance,
+                           BigDecimal difference,
+                           Instant checkedAt) {
+    }
+}
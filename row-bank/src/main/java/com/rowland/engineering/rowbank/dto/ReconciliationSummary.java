@@ -0,0 +1,17 @@
+package com.rowland.engineering.rowbank.dto;
+
+import java.time.Instant;
+
+public record ReconciliationSummary(Mode mode,
+                                    Instant startedAt,
+                                    Instant finishedAt,
+                                    long accountsChecked,
+                                    long mismatchesFound,
+                                    long watermark,
+                                    boolean complete) {
+
+    public enum Mode {
+        FULL,
+        INCREMENTAL
+    }
+}
@@ -0,0 +1,14 @@
+package com.rowland.engineering.rowbank.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class RefreshTokenRequest {
+    @NotBlank
+    private String refreshToken;
+}
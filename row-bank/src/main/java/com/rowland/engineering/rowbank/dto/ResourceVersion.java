@@ -0,0 +1,10 @@
+package com.rowland.engineering.rowbank.dto;
+
+import java.time.Instant;
+
+/**
+ * Validators for a conditional GET. {@code lastModified} is null when the
+ * representation can change without the row's update time moving.
+ */
+public record ResourceVersion(String etag, Instant lastModified) {
+}
@@ -0,0 +1,4 @@
+package com.rowland.engineering.rowbank.dto;
+
+public record StatementAccount(String accountNumber, String firstName, String lastName) {
+}
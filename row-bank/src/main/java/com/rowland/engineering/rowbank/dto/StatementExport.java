@@ -0,0 +1,24 @@
+package com.rowland.engineering.rowbank.dto;
+
+import com.rowland.engineering.rowbank.service.statement.StatementFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StatementExport {
+    private String exportId;
+    private State status;
+    private StatementFormat format;
+    private Long sizeBytes;
+    private String message;
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
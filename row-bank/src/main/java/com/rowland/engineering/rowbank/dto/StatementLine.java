@@ -0,0 +1,14 @@
+package com.rowland.engineering.rowbank.dto;
+
+import com.rowland.engineering.rowbank.model.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record StatementLine(Long id, TransactionType transactionType, BigDecimal amount, LocalDateTime timestamp,
+                            String description, String reference) {
+
+    public BigDecimal signedAmount() {
+        return transactionType == TransactionType.DEBIT ? amount.negate() : amount;
+    }
+}
@@ -0,0 +1,15 @@
+package com.rowland.engineering.rowbank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransactionPage {
+    private List<TransactionResponse> transactions;
+    private String nextCursor;
+}
@@ -0,0 +1,20 @@
+package com.rowland.engineering.rowbank.dto;
+
+import com.rowland.engineering.rowbank.model.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransactionResponse {
+    private Long id;
+    private TransactionType transactionType;
+    private BigDecimal amount;
+    private LocalDateTime timestamp;
+    private String description;
+}
@@ -0,0 +1,25 @@
+package com.rowland.engineering.rowbank.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransferRequest {
+
+    @NotBlank
+    private String toAccountNumber;
+
+    @NotNull
+    private BigDecimal amount;
+
+    @Size(max = 300)
+    private String description;
+}
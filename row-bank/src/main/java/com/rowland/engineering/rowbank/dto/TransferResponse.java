@@ -0,0 +1,17 @@
+package com.rowland.engineering.rowbank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransferResponse {
+    private String reference;
+    private String toAccountNumber;
+    private BigDecimal amount;
+    private BigDecimal balance;
+}
@@ -0,0 +1,15 @@
+package com.rowland.engineering.rowbank.dto;
+
+import com.rowland.engineering.rowbank.model.RoleName;
+
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * One row of the profile read: the user's columns joined with one of their role
+ * names. Selected by constructor expression, so nothing enters the persistence context.
+ */
+public record UserProfileRow(Long id, String firstName, String lastName, String username,
+                             String accountNumber, Date dateOfBirth, String email,
+                             Instant updatedAt, RoleName roleName) {
+}
@@ -1,11 +1,13 @@
 package com.rowland.engineering.rowbank.dto;
 
-import com.rowland.engineering.rowbank.model.Role;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.rowland.engineering.rowbank.model.RoleName;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.Date;
 import java.util.Set;
 
@@ -28,5 +30,8 @@ public class UserResponse {
     private String email;
     private BigDecimal balance;
 
-    private Set<Role> roles;
+    private Set<RoleName> roles;
+
+    @JsonIgnore
+    private Instant updatedAt;
 }
@@ -0,0 +1,23 @@
+package com.rowland.engineering.rowbank.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Entity
+@Table(name = "account_number_sequence")
+public class AccountNumberSequence {
+    @Id
+    @Column(length = 40)
+    private String name;
+
+    @Column(nullable = false)
+    private Long nextValue;
+}
@@ -0,0 +1,69 @@
+package com.rowland.engineering.rowbank.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * The last reconciliation of one account: its opening balance plus every signed
+ * transaction up to {@code throughTransactionId}, and the stored balance seen in
+ * the same read. Later checks only need to add the transactions after that id.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "account_reconciliations", indexes = {
+        @Index(name = "idx_account_reconciliations_mismatched", columnList = "mismatched")
+})
+public class AccountReconciliation implements Persistable<Long> {
+    @Id
+    private Long userId;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal expectedBalance;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal balance;
+
+    @Column(nullable = false)
+    private Long throughTransactionId;
+
+    @Column(nullable = false)
+    private boolean mismatched;
+
+    @Column(nullable = false)
+    private Instant checkedAt;
+
+    @Transient
+    private boolean newRecord = true;
+
+    public AccountReconciliation(Long userId) {
+        this.userId = userId;
+    }
+
+    @Override
+    public Long getId() {
+        return userId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newRecord;
+    }
+
+    public BigDecimal getDifference() {
+        return balance.subtract(expectedBalance);
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.newRecord = false;
+    }
+}
@@ -0,0 +1,33 @@
+package com.rowland.engineering.rowbank.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * The folded balance of one account over every transaction timestamped before
+ * {@code coveredUntil}. The current balance is this plus the signed sum of the
+ * account's transactions from {@code coveredUntil} on.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Entity
+@Table(name = "balance_checkpoints")
+public class BalanceCheckpoint {
+    @Id
+    private Long userId;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal balance;
+
+    @Column(nullable = false)
+    private LocalDateTime coveredUntil;
+}
@@ -0,0 +1,45 @@
+package com.rowland.engineering.rowbank.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Checkpoint for a finished range of account ids, [firstAccountId, endAccountId),
+ * within an end-of-day run. Resumed runs skip ranges that have one.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Getter
+@Entity
+@Table(name = "end_of_day_chunks", uniqueConstraints = {
+        @UniqueConstraint(columnNames = {"business_date", "first_account_id"})
+})
+public class EndOfDayChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "end_of_day_chunks_seq")
+    @SequenceGenerator(name = "end_of_day_chunks_seq", sequenceName = "end_of_day_chunks_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate businessDate;
+
+    @Column(nullable = false)
+    private Long firstAccountId;
+
+    @Column(nullable = false)
+    private Long endAccountId;
+
+    @Column(nullable = false)
+    private Integer accountsPosted;
+
+    @Column(nullable = false)
+    private Instant completedAt;
+}
@@ -0,0 +1,39 @@
+package com.rowland.engineering.rowbank.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * One end-of-day run per business date. A run still marked RUNNING at startup was
+ * interrupted and is resumed from its chunk checkpoints.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Entity
+@Table(name = "end_of_day_runs")
+public class EndOfDayRun {
+    @Id
+    private LocalDate businessDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private Status status;
+
+    @Column(nullable = false)
+    private Instant startedAt;
+
+    private Instant completedAt;
+
+    private Long accountsPosted;
+
+    public enum Status {
+        RUNNING,
+        COMPLETED
+    }
+}
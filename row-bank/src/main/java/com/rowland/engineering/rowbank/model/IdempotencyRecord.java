@@ -0,0 +1,67 @@
+package com.rowland.engineering.rowbank.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * The stored outcome of a request made with an {@code Idempotency-Key}. Records are
+ * always inserted, never merged, so a second writer with the same key fails on the
+ * primary key instead of overwriting the first outcome.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "idempotency_keys", indexes = {
+        @Index(name = "idx_idempotency_keys_expires_at", columnList = "expiresAt")
+})
+public class IdempotencyRecord implements Persistable<String> {
+    @Id
+    @Column(length = 140)
+    private String id;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+
+    @Column(nullable = false)
+    private Boolean success;
+
+    @Column(length = 300)
+    private String message;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+
+    @Transient
+    private boolean newRecord = true;
+
+    public IdempotencyRecord(String id, Long userId, String fingerprint, Instant createdAt, Instant expiresAt) {
+        this.id = id;
+        this.userId = userId;
+        this.fingerprint = fingerprint;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newRecord;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.newRecord = false;
+    }
+}
@@ -0,0 +1,13 @@
+package com.rowland.engineering.rowbank.model;
+
+public enum LedgerMode {
+    /** {@code User.balance} is updated with every ledger write and is the balance. */
+    MUTABLE,
+    /**
+     * {@code transactions_table} is the source of truth. Reads add the transactions
+     * since the account's checkpoint to it. Switching to this mode seeds every
+     * account's checkpoint from {@code User.balance}, which is then left as it was;
+     * accounts opened later keep their opening balance there.
+     */
+    APPEND_ONLY
+}
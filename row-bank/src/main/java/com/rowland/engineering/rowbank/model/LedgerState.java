@@ -0,0 +1,36 @@
+package com.rowland.engineering.rowbank.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * The single row recording which {@link LedgerMode} the ledger last ran in, so a
+ * change of {@code app.ledger.mode} can be detected and migrated once.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Entity
+@Table(name = "ledger_state")
+public class LedgerState {
+    public static final Integer ID = 1;
+
+    @Id
+    private Integer id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private LedgerMode mode;
+
+    @Column(nullable = false)
+    private LocalDateTime switchedAt;
+}
@@ -0,0 +1,30 @@
+package com.rowland.engineering.rowbank.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Which relay instance currently publishes an outbox partition, and until when.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Entity
+@Table(name = "outbox_leases")
+public class OutboxLease {
+    @Id
+    private Integer partitionNo;
+
+    @Column(length = 100)
+    private String owner;
+
+    @Column(nullable = false)
+    private Instant leaseUntil;
+}
@@ -0,0 +1,36 @@
+package com.rowland.engineering.rowbank.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * The single row recording how far reconciliation has read: accounts with
+ * transactions after {@code transactionId} are rechecked by the next incremental run.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Entity
+@Table(name = "reconciliation_watermarks")
+public class ReconciliationWatermark {
+    public static final Integer ID = 1;
+
+    @Id
+    private Integer id;
+
+    @Column(nullable = false)
+    private Long transactionId;
+
+    @Column(nullable = false)
+    private Instant fullSweepAt;
+
+    @Column(nullable = false)
+    private Instant updatedAt;
+}
@@ -19,17 +19,26 @@ import java.time.format.DateTimeFormatter;
 @Entity
 @AllArgsConstructor
 @Builder
-@Table(name = "transactions_table")
+@Table(name = "transactions_table", indexes = {
+        @Index(name = "idx_transactions_user_timestamp_id", columnList = "user_id, timestamp, id"),
+        @Index(name = "idx_transactions_timestamp", columnList = "timestamp"),
+        @Index(name = "idx_transactions_reference", columnList = "reference")
+})
 @Validated
 public class Transaction {
 
+    // Formatters are immutable and thread-safe, so one instance serves every row.
+    public static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("MMM dd, yyyy hh:mm a");
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
 
     @NotNull
     private TransactionType transactionType;
-    @Min(value = 50)
+    // The 50 minimum for deposits and transfers is checked by LedgerEngine; interest and fees are smaller.
+    @Positive
     private BigDecimal amount;
     @PastOrPresent
     private LocalDateTime timestamp;
@@ -37,6 +46,9 @@ public class Transaction {
     @Size(max = 300)
     private String description;
 
+    @Column(length = 64)
+    private String reference;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     @Valid
@@ -47,7 +59,6 @@ public class Transaction {
         return TransactionType.DEBIT.equals(transactionType) || TransactionType.CREDIT.equals(transactionType);
     }
     public String getFormattedTimestamp() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMM dd, yyyy hh:mm a");
-        return timestamp.format(formatter);
+        return timestamp.format(TIMESTAMP_FORMAT);
     }
 }
@@ -19,6 +19,7 @@ import java.util.Set;
 @Data
 @Entity
 @AllArgsConstructor
+@EntityListeners(UserChangeListener.class)
 @Table(name = "users_table", uniqueConstraints = {
         @UniqueConstraint(columnNames = {
                 "username"
@@ -32,7 +33,8 @@ import java.util.Set;
 })
 public class User extends DateAudit {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
     @NotBlank
     @Size(min = 2,max = 25)
@@ -58,6 +60,10 @@ public class User extends DateAudit {
 
     @DecimalMin(value = "0.0", message = "Balance must be 0.0 or greater")
     private BigDecimal balance;
+
+    // What the account was opened with; balance should always equal this plus its signed transactions.
+    // Null only on accounts opened before it was recorded.
+    private BigDecimal openingBalance;
     @NotBlank
     private String password;
 
@@ -77,5 +83,6 @@ public class User extends DateAudit {
         this.email = email;
         this.password = password;
         this.balance = balance;
+        this.openingBalance = balance == null ? BigDecimal.ZERO : balance;
     }
 }
@@ -0,0 +1,22 @@
+package com.rowland.engineering.rowbank.model;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * Publishes a {@link UserChangedEvent} whenever a managed {@link User} is updated
+ * or removed, so caches derived from the entity can be dropped.
+ */
+@RequiredArgsConstructor
+public class UserChangeListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @PostUpdate
+    @PostRemove
+    public void onChange(User user) {
+        eventPublisher.publishEvent(new UserChangedEvent(user.getId()));
+    }
+}
@@ -0,0 +1,4 @@
+package com.rowland.engineering.rowbank.model;
+
+public record UserChangedEvent(Long userId) {
+}
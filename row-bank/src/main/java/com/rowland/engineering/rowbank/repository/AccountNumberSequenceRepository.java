@@ -0,0 +1,19 @@
+package com.rowland.engineering.rowbank.repository;
+
+import com.rowland.engineering.rowbank.model.AccountNumberSequence;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface AccountNumberSequenceRepository extends JpaRepository<AccountNumberSequence, String> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from AccountNumberSequence s where s.name = :name")
+    Optional<AccountNumberSequence> findForUpdate(@Param("name") String name);
+}
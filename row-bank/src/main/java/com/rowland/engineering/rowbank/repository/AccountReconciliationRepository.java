@@ -0,0 +1,44 @@
+package com.rowland.engineering.rowbank.repository;
+
+import com.rowland.engineering.rowbank.model.AccountReconciliation;
+import com.rowland.engineering.rowbank.service.reconciliation.AccountAggregate;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface AccountReconciliationRepository extends JpaRepository<AccountReconciliation, Long> {
+
+    // Adds only the transactions after each account's last reconciled one.
+    @Query("select new com.rowland.engineering.rowbank.service.reconciliation.AccountAggregate(" +
+            "u.id, coalesce(u.balance, 0), r.expectedBalance + coalesce(sum(" + TransactionRepository.SIGNED_AMOUNT + "), 0), " +
+            "coalesce(max(t.id), r.throughTransactionId)) " +
+            "from User u join AccountReconciliation r on r.userId = u.id " +
+            "left join Transaction t on t.user.id = u.id and t.id > r.throughTransactionId " +
+            "where u.id in :ids " +
+            "group by u.id, u.balance, r.expectedBalance, r.throughTransactionId")
+    List<AccountAggregate> recheck(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("delete from AccountReconciliation r where r.userId >= :fromId and r.userId < :toId")
+    int deleteRange(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    @Transactional
+    @Query("select r from AccountReconciliation r where r.mismatched = true order by r.checkedAt desc, r.userId")
+    List<AccountReconciliation> findMismatches(Pageable pageable);
+
+    @Transactional
+    long countByMismatchedTrue();
+
+    @Transactional
+    @Query("select coalesce(sum(abs(r.balance - r.expectedBalance)), 0) from AccountReconciliation r where r.mismatched = true")
+    BigDecimal sumMismatchedDifference();
+}
@@ -0,0 +1,31 @@
+package com.rowland.engineering.rowbank.repository;
+
+import com.rowland.engineering.rowbank.model.BalanceCheckpoint;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BalanceCheckpointRepository extends JpaRepository<BalanceCheckpoint, Long> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from BalanceCheckpoint c where c.userId in :userIds order by c.userId")
+    List<BalanceCheckpoint> findAllForUpdate(@Param("userIds") Collection<Long> userIds);
+
+    @Query("select max(c.coveredUntil) from BalanceCheckpoint c")
+    Optional<LocalDateTime> findLatestCoveredUntil();
+
+    @Modifying
+    @Query("insert into BalanceCheckpoint (userId, balance, coveredUntil) " +
+            "select u.id, coalesce(u.balance, 0), :coveredUntil from User u")
+    int seedFromStoredBalances(@Param("coveredUntil") LocalDateTime coveredUntil);
+}
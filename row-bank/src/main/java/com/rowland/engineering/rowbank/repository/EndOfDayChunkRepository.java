@@ -0,0 +1,23 @@
+package com.rowland.engineering.rowbank.repository;
+
+import com.rowland.engineering.rowbank.model.EndOfDayChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface EndOfDayChunkRepository extends JpaRepository<EndOfDayChunk, Long> {
+
+    @Transactional
+    @Query("select c.firstAccountId from EndOfDayChunk c where c.businessDate = :businessDate")
+    List<Long> findCompletedChunkStarts(@Param("businessDate") LocalDate businessDate);
+
+    @Transactional
+    @Query("select coalesce(sum(c.accountsPosted), 0) from EndOfDayChunk c where c.businessDate = :businessDate")
+    long sumAccountsPosted(@Param("businessDate") LocalDate businessDate);
+}
@@ -0,0 +1,16 @@
+package com.rowland.engineering.rowbank.repository;
+
+import com.rowland.engineering.rowbank.model.EndOfDayRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface EndOfDayRunRepository extends JpaRepository<EndOfDayRun, LocalDate> {
+
+    @Transactional
+    List<EndOfDayRun> findByStatusOrderByBusinessDate(EndOfDayRun.Status status);
+}
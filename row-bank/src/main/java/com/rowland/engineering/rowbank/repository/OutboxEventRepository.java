@@ -0,0 +1,28 @@
+package com.rowland.engineering.rowbank.repository;
+
+import com.rowland.engineering.rowbank.dto.OutboxMessage;
+import com.rowland.engineering.rowbank.model.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    @Query("select new com.rowland.engineering.rowbank.dto.OutboxMessage(" +
+            "e.id, e.accountId, e.transactionType, e.amount, e.description, e.reference, e.occurredAt, e.createdAt) " +
+            "from OutboxEvent e where e.partitionNo = :partitionNo order by e.id")
+    List<OutboxMessage> findPending(@Param("partitionNo") Integer partitionNo, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("delete from OutboxEvent e where e.id in :ids")
+    int deletePublished(@Param("ids") Collection<Long> ids);
+}
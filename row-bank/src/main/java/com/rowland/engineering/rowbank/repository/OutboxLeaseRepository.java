@@ -0,0 +1,28 @@
+package com.rowland.engineering.rowbank.repository;
+
+import com.rowland.engineering.rowbank.model.OutboxLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface OutboxLeaseRepository extends JpaRepository<OutboxLease, Integer> {
+
+    // Takes or extends the lease; only succeeds for its current owner or once the lease has run out.
+    @Transactional
+    @Modifying
+    @Query("update OutboxLease l set l.owner = :owner, l.leaseUntil = :until " +
+            "where l.partitionNo = :partitionNo and (l.owner = :owner or l.leaseUntil < :now)")
+    int tryAcquire(@Param("partitionNo") Integer partitionNo, @Param("owner") String owner,
+                   @Param("until") Instant until, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("update OutboxLease l set l.owner = null, l.leaseUntil = :now where l.owner = :owner")
+    int releaseAll(@Param("owner") String owner, @Param("now") Instant now);
+}
@@ -0,0 +1,9 @@
+package com.rowland.engineering.rowbank.repository;
+
+import com.rowland.engineering.rowbank.model.ReconciliationWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReconciliationWatermarkRepository extends JpaRepository<ReconciliationWatermark, Integer> {
+}
@@ -1,9 +1,116 @@
 package com.rowland.engineering.rowbank.repository;
 
+import com.rowland.engineering.rowbank.dto.StatementLine;
+import com.rowland.engineering.rowbank.dto.TransactionResponse;
 import com.rowland.engineering.rowbank.model.Transaction;
+import com.rowland.engineering.rowbank.model.TransactionType;
+import com.rowland.engineering.rowbank.service.ledger.AccountAmount;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+
+    String SIGNED_AMOUNT = "case when t.transactionType = com.rowland.engineering.rowbank.model.TransactionType.DEBIT " +
+            "then -t.amount else t.amount end";
+
+    // One statement, so a checkpoint compacted concurrently is never counted twice.
+    // Accounts without a checkpoint were opened after the switch to append-only, so
+    // their stored balance is still the opening balance.
+    @Query("select coalesce(c.balance, u.balance, 0) + coalesce((" +
+            "select sum(" + SIGNED_AMOUNT + ") from Transaction t " +
+            "where t.user.id = u.id and (c.coveredUntil is null or t.timestamp >= c.coveredUntil)), 0) " +
+            "from User u left join BalanceCheckpoint c on c.userId = u.id " +
+            "where u.id = :userId")
+    @Transactional
+    Optional<BigDecimal> findLedgerBalance(@Param("userId") Long userId);
+
+    @Query("select new com.rowland.engineering.rowbank.service.ledger.AccountAmount(t.user.id, sum(" + SIGNED_AMOUNT + ")) " +
+            "from Transaction t " +
+            "where t.timestamp >= :from and t.timestamp < :to " +
+            "group by t.user.id")
+    List<AccountAmount> sumByAccount(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    boolean existsByReferenceAndUserId(String reference, Long userId);
+
+    @Transactional
+    @Query("select t.reference from Transaction t where t.reference in :references")
+    List<String> findExistingReferences(@Param("references") Collection<String> references);
+
+    @Transactional
+    @Query("select max(t.id) from Transaction t")
+    Optional<Long> findMaxId();
+
+    @Transactional
+    @Query("select distinct t.user.id from Transaction t where t.id > :afterId and t.id <= :upToId")
+    List<Long> findAccountsWithTransactionsBetween(@Param("afterId") Long afterId, @Param("upToId") Long upToId);
+
+    @Query("select min(t.timestamp) from Transaction t")
+    Optional<LocalDateTime> findEarliestTimestamp();
+
+    @Query("select new com.rowland.engineering.rowbank.dto.TransactionResponse(" +
+            "t.id, t.transactionType, t.amount, t.timestamp, t.description) " +
+            "from Transaction t " +
+            "where t.user.id = :userId " +
+            "and t.timestamp >= :from and t.timestamp < :to " +
+            "and (:type is null or t.transactionType = :type) " +
+            "and (t.timestamp < :afterTimestamp or (t.timestamp = :afterTimestamp and t.id < :afterId)) " +
+            "order by t.timestamp desc, t.id desc")
+    List<TransactionResponse> findHistoryPage(@Param("userId") Long userId,
+                                              @Param("from") LocalDateTime from,
+                                              @Param("to") LocalDateTime to,
+                                              @Param("type") TransactionType type,
+                                              @Param("afterTimestamp") LocalDateTime afterTimestamp,
+                                              @Param("afterId") Long afterId,
+                                              Pageable pageable);
+
+    // Integer.MIN_VALUE fetch size makes MySQL Connector/J stream rows instead of buffering the result set.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select new com.rowland.engineering.rowbank.dto.TransactionResponse(" +
+            "t.id, t.transactionType, t.amount, t.timestamp, t.description) " +
+            "from Transaction t " +
+            "where t.user.id = :userId " +
+            "and t.timestamp >= :from and t.timestamp < :to " +
+            "and (:type is null or t.transactionType = :type) " +
+            "order by t.timestamp desc, t.id desc")
+    Stream<TransactionResponse> streamHistory(@Param("userId") Long userId,
+                                              @Param("from") LocalDateTime from,
+                                              @Param("to") LocalDateTime to,
+                                              @Param("type") TransactionType type);
+
+    @Query("select coalesce(sum(" + SIGNED_AMOUNT + "), 0) from Transaction t " +
+            "where t.user.id = :userId and t.timestamp >= :from")
+    BigDecimal sumSignedSince(@Param("userId") Long userId, @Param("from") LocalDateTime from);
+
+    // Oldest first, for running balances; streamed like streamHistory.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select new com.rowland.engineering.rowbank.dto.StatementLine(" +
+            "t.id, t.transactionType, t.amount, t.timestamp, t.description, t.reference) " +
+            "from Transaction t " +
+            "where t.user.id = :userId " +
+            "and t.timestamp >= :from and t.timestamp < :to " +
+            "order by t.timestamp, t.id")
+    Stream<StatementLine> streamStatement(@Param("userId") Long userId,
+                                          @Param("from") LocalDateTime from,
+                                          @Param("to") LocalDateTime to);
 }
@@ -1,11 +1,22 @@
 package com.rowland.engineering.rowbank.repository;
 
+import com.rowland.engineering.rowbank.dto.StatementAccount;
+import com.rowland.engineering.rowbank.dto.UserProfileRow;
 import com.rowland.engineering.rowbank.model.User;
+import com.rowland.engineering.rowbank.service.ledger.AccountAmount;
+import com.rowland.engineering.rowbank.service.reconciliation.AccountAggregate;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,13 +24,123 @@ import java.util.Optional;
 public interface UserRepository extends JpaRepository<User, Long> {
 
 
+    // Fetch plans: the principal load, the profile read and batch loads all use roles,
+    // so each fetches them in the same statement instead of one lazy select per user.
+    @EntityGraph(attributePaths = "roles")
     Optional<User> findByUsernameOrEmail(String username, String email);
 
+    @EntityGraph(attributePaths = "roles")
     List<User> findByIdIn(List<Long> userIds);
 
+    @EntityGraph(attributePaths = "roles")
+    Optional<User> findWithRolesById(Long id);
+
+    @Query("select new com.rowland.engineering.rowbank.dto.UserProfileRow(u.id, u.firstName, u.lastName, " +
+            "u.username, u.accountNumber, u.dateOfBirth, u.email, u.updatedAt, r.name) " +
+            "from User u left join u.roles r where u.id = :id")
+    List<UserProfileRow> findProfileRows(@Param("id") Long id);
+
+    @Query("select u.updatedAt from User u where u.id = :id")
+    Optional<Instant> findUpdatedAtById(@Param("id") Long id);
+
     Boolean existsByUsername(String username);
 
     Boolean existsByEmail(String email);
 
+    @Query("select u.username from User u where u.username in :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    @Query("select u.email from User u where u.email in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    // Seeds the in-memory ledger, so it must not be served by a lagging replica.
+    @Transactional
+    @Query("select coalesce(u.balance, 0) from User u where u.id = :id")
+    Optional<BigDecimal> findBalanceById(@Param("id") Long id);
+
+    // In append-only mode only accounts opened since the switch lack a checkpoint,
+    // and their stored balance is still the opening balance.
+    @Query("select new com.rowland.engineering.rowbank.service.ledger.AccountAmount(u.id, coalesce(u.balance, 0)) " +
+            "from User u where u.id in :ids")
+    List<AccountAmount> findOpeningBalances(@Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Query("select min(u.id) from User u")
+    Optional<Long> findMinId();
+
+    @Transactional
+    @Query("select max(u.id) from User u")
+    Optional<Long> findMaxId();
+
+    // Seeds the in-memory ledger for batch postings, so like findBalanceById it stays on the primary.
+    // Only accounts opened before :openedBefore are returned.
+    @Transactional
+    @Query("select new com.rowland.engineering.rowbank.service.ledger.AccountAmount(u.id, coalesce(u.balance, 0)) " +
+            "from User u where u.id >= :fromId and u.id < :toId and u.createdAt < :openedBefore order by u.id")
+    List<AccountAmount> findBalancesInRange(@Param("fromId") Long fromId, @Param("toId") Long toId,
+                                            @Param("openedBefore") Instant openedBefore);
+
+    // Balances at the close of the day before :cutoff: the ledger balance, derived as
+    // findLedgerBalance does, less everything posted since. In mutable mode there are no
+    // checkpoints and the stored balance is current. One statement, so a concurrent
+    // commit or compaction is counted on both sides or neither. Accounts opened at or after
+    // :openedBefore had no balance on that day, since their opening balance has no transaction.
+    @Transactional
+    @Query("select new com.rowland.engineering.rowbank.service.ledger.AccountAmount(u.id, " +
+            "coalesce(c.balance, u.balance, 0) + coalesce((" +
+            "select sum(" + TransactionRepository.SIGNED_AMOUNT + ") from Transaction t where t.user.id = u.id " +
+            "and ((c.coveredUntil is null and :appendOnly = true) or t.timestamp >= c.coveredUntil)), 0) - coalesce((" +
+            "select sum(" + TransactionRepository.SIGNED_AMOUNT + ") from Transaction t where t.user.id = u.id " +
+            "and t.timestamp >= :cutoff), 0)) " +
+            "from User u left join BalanceCheckpoint c on c.userId = u.id " +
+            "where u.id >= :fromId and u.id < :toId and u.createdAt < :openedBefore order by u.id")
+    List<AccountAmount> findClosingBalancesInRange(@Param("fromId") Long fromId, @Param("toId") Long toId,
+                                                   @Param("cutoff") LocalDateTime cutoff,
+                                                   @Param("openedBefore") Instant openedBefore,
+                                                   @Param("appendOnly") boolean appendOnly);
+
+    String ACCOUNT_AGGREGATE = "select new com.rowland.engineering.rowbank.service.reconciliation.AccountAggregate(" +
+            "u.id, coalesce(u.balance, 0), coalesce(u.openingBalance, 0) + coalesce(sum(" + TransactionRepository.SIGNED_AMOUNT + "), 0), " +
+            "coalesce(max(t.id), 0)) " +
+            "from User u left join Transaction t on t.user.id = u.id ";
+
+    // Accounts opened before opening balances were recorded are taken as correct the first
+    // time they are swept: their opening balance becomes the stored balance less their transactions.
+    @Modifying
+    @Query("update User u set u.openingBalance = coalesce(u.balance, 0) - coalesce((" +
+            "select sum(" + TransactionRepository.SIGNED_AMOUNT + ") from Transaction t where t.user.id = u.id), 0) " +
+            "where u.openingBalance is null and u.id >= :fromId and u.id < :toId")
+    int recordMissingOpeningBalances(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    @Query(ACCOUNT_AGGREGATE + "where u.id >= :fromId and u.id < :toId group by u.id, u.balance, u.openingBalance")
+    List<AccountAggregate> aggregateRange(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    @Query(ACCOUNT_AGGREGATE + "where u.id in :ids group by u.id, u.balance, u.openingBalance")
+    List<AccountAggregate> aggregateAccounts(@Param("ids") Collection<Long> ids);
+
+    @Query("select new com.rowland.engineering.rowbank.dto.StatementAccount(u.accountNumber, u.firstName, u.lastName) " +
+            "from User u where u.id = :id")
+    Optional<StatementAccount> findStatementAccount(@Param("id") Long id);
+
+    @Query("select u.id from User u where u.accountNumber = :accountNumber")
+    Optional<Long> findIdByAccountNumber(@Param("accountNumber") String accountNumber);
+
+    @Modifying
+    @Query("update User u set u.balance = coalesce(u.balance, 0) + :amount, u.updatedAt = :now " +
+            "where u.id = :id and coalesce(u.balance, 0) + :amount >= 0")
+    int adjustBalance(@Param("id") Long id, @Param("amount") BigDecimal amount, @Param("now") Instant now);
+
+    // Writes the balances append-only mode derived back into users_table.
+    @Modifying
+    @Query("update User u set u.balance = " +
+            "coalesce((select c.balance from BalanceCheckpoint c where c.userId = u.id), u.balance, 0) + " +
+            "coalesce((select sum(" + TransactionRepository.SIGNED_AMOUNT + ") from Transaction t where t.user.id = u.id " +
+            "and not exists (select 1 from BalanceCheckpoint c where c.userId = u.id and t.timestamp < c.coveredUntil)), 0)")
+    int storeLedgerBalances();
+
+    @Modifying
+    @Query("update User u set u.password = :password where u.id = :id")
+    int updatePassword(@Param("id") Long id, @Param("password") String password);
+
 
 }
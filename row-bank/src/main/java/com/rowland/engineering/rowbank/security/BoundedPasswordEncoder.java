@@ -0,0 +1,173 @@
+package com.rowland.engineering.rowbank.security;
+
+import com.rowland.engineering.rowbank.exception.AppException;
+import com.rowland.engineering.rowbank.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt encoder whose hashing runs on its own fixed-size pool behind a bounded
+ * queue, so password work can only ever occupy {@code app.security.hashing.threads}
+ * cores. Callers block until their hash is done; when the queue is full the call
+ * fails fast with a 429 instead of piling up. Hashes made with a work factor other
+ * than {@code app.security.bcrypt-strength} report {@link #upgradeEncoding}, which
+ * lets sign-in rehash them.
+ */
+@Component
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[abxy]?\\$(\\d\\d)\\$");
+    private static final long BATCH_RETRY_MILLIS = 20;
+
+    private final PasswordEncoder delegate;
+    private final int strength;
+    private final int threads;
+    private final ThreadPoolExecutor executor;
+
+    private final Timer queueWait;
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(MeterRegistry meterRegistry,
+                                  @Value("${app.security.bcrypt-strength:10}") int strength,
+                                  @Value("${app.security.hashing.threads:2}") int threads,
+                                  @Value("${app.security.hashing.queue-capacity:64}") int queueCapacity) {
+        this.delegate = new InstrumentedPasswordEncoder(new BCryptPasswordEncoder(strength), meterRegistry);
+        this.strength = strength;
+        this.threads = threads;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), task -> {
+                    Thread thread = new Thread(task, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.queueWait = Timer.builder("password.hashing.queue.wait")
+                .description("Time a hash or verify waited for a hashing thread")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejected = Counter.builder("password.hashing.rejected")
+                .description("Hashes refused because the hashing queue was full")
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.queue.depth", executor, pool -> pool.getQueue().size())
+                .description("Hashes waiting for a hashing thread")
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Hashing threads currently busy")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return await(submit(() -> delegate.encode(rawPassword)));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return await(submit(() -> delegate.matches(rawPassword, encodedPassword)));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher cost = BCRYPT_COST.matcher(encodedPassword);
+        return cost.find() && Integer.parseInt(cost.group(1)) != strength;
+    }
+
+    /**
+     * Hashes a batch, keeping at most one hash per hashing thread queued at a time
+     * so interactive sign-ins still find room in the queue. A full queue makes the
+     * batch wait for room rather than fail.
+     */
+    public List<String> encodeAll(List<? extends CharSequence> rawPasswords) {
+        List<String> hashes = new ArrayList<>(rawPasswords.size());
+        List<Future<String>> window = new ArrayList<>(threads);
+        for (int i = 0; i < rawPasswords.size(); i += threads) {
+            for (CharSequence rawPassword : rawPasswords.subList(i, Math.min(i + threads, rawPasswords.size()))) {
+                window.add(submitWhenRoom(() -> delegate.encode(rawPassword)));
+            }
+            for (Future<String> hash : window) {
+                hashes.add(await(hash));
+            }
+            window.clear();
+        }
+        return hashes;
+    }
+
+    private <T> Future<T> submit(Callable<T> work) {
+        try {
+            return executor.submit(timed(work));
+        } catch (RejectedExecutionException ex) {
+            rejected.increment();
+            throw new TooManyRequestsException("Password hashing is saturated, retry shortly", 1);
+        }
+    }
+
+    private <T> Future<T> submitWhenRoom(Callable<T> work) {
+        Callable<T> task = timed(work);
+        while (true) {
+            try {
+                return executor.submit(task);
+            } catch (RejectedExecutionException ex) {
+                if (executor.isShutdown()) {
+                    throw new AppException("Password hashing has shut down", ex);
+                }
+            }
+            try {
+                Thread.sleep(BATCH_RETRY_MILLIS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new AppException("Interrupted while waiting to hash a password", ex);
+            }
+        }
+    }
+
+    private <T> Callable<T> timed(Callable<T> work) {
+        long queuedAt = System.nanoTime();
+        return () -> {
+            queueWait.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+            return work.call();
+        };
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AppException("Interrupted while hashing a password", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new AppException("Password hashing failed", ex.getCause());
+        }
+    }
+}
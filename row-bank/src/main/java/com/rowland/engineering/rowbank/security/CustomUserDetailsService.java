@@ -2,20 +2,45 @@ package com.rowland.engineering.rowbank.security;
 
 
 import com.rowland.engineering.rowbank.model.User;
+import com.rowland.engineering.rowbank.model.UserChangedEvent;
 import com.rowland.engineering.rowbank.repository.UserRepository;
+import com.rowland.engineering.rowbank.utils.BoundedCache;
+import com.rowland.engineering.rowbank.utils.OperationTimer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.transaction.Transactional;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 @Service
-@RequiredArgsConstructor
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
 
+    private final BoundedCache<Long, UserPrincipal> principals;
+
+    private final OperationTimer loadUserByIdTimer;
+
+    private final Counter rehashed;
+
+    public CustomUserDetailsService(UserRepository userRepository,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.security.principal-cache.max-size:10000}") int maxSize,
+                                    @Value("${app.security.principal-cache.ttl-ms:300000}") long ttlMs) {
+        this.userRepository = userRepository;
+        this.principals = new BoundedCache<>(maxSize, ttlMs);
+        this.principals.bindTo(meterRegistry, "user.principals");
+        this.loadUserByIdTimer = OperationTimer.register(meterRegistry, "security", "loadUserById");
+        this.rehashed = Counter.builder("password.rehashed")
+                .description("Stored password hashes upgraded to the configured work factor at sign-in")
+                .register(meterRegistry);
+    }
+
 
     @Override
     @Transactional
@@ -29,13 +54,48 @@ public class CustomUserDetailsService implements UserDetailsService {
         return UserPrincipal.create(user);
     }
 
-    @Transactional
     public UserDetails loadUserById(Long id) {
-        User user = userRepository.findById(id).orElseThrow(
-                () -> new UsernameNotFoundException("User not found with id : " + id)
-        );
-        return UserPrincipal.create(user);
+        long start = System.nanoTime();
+        UserPrincipal principal = principals.get(id);
+        if (principal != null) {
+            loadUserByIdTimer.success(start);
+            return principal;
+        }
+        try {
+            User user = userRepository.findWithRolesById(id).orElseThrow(
+                    () -> new UsernameNotFoundException("User not found with id : " + id)
+            );
+            principal = UserPrincipal.create(user);
+            principals.put(id, principal);
+            loadUserByIdTimer.success(start);
+            return principal;
+        } catch (RuntimeException ex) {
+            loadUserByIdTimer.error(start);
+            throw ex;
+        }
     }
-}
 
+    /**
+     * Called by the authentication provider after a successful sign-in whose stored
+     * hash uses a different work factor than the one configured.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        UserPrincipal principal = (UserPrincipal) user;
+        userRepository.updatePassword(principal.getId(), newPassword);
+        evictPrincipal(principal.getId());
+        rehashed.increment();
+        principal.setPassword(newPassword);
+        return principal;
+    }
 
+    public void evictPrincipal(Long id) {
+        principals.invalidate(id);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        evictPrincipal(event.userId());
+    }
+}
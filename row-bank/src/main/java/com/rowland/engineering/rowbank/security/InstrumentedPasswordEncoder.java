@@ -0,0 +1,53 @@
+package com.rowland.engineering.rowbank.security;
+
+import com.rowland.engineering.rowbank.utils.OperationTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Times every hash and verify of the wrapped encoder. BCrypt is deliberately slow,
+ * so these timers usually explain most of signin and signup latency.
+ */
+public class InstrumentedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final OperationTimer encodeTimer;
+    private final OperationTimer matchesTimer;
+
+    public InstrumentedPasswordEncoder(PasswordEncoder delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.encodeTimer = OperationTimer.register(meterRegistry, "crypto", "password.encode");
+        this.matchesTimer = OperationTimer.register(meterRegistry, "crypto", "password.matches");
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        long start = System.nanoTime();
+        try {
+            String encoded = delegate.encode(rawPassword);
+            encodeTimer.success(start);
+            return encoded;
+        } catch (RuntimeException ex) {
+            encodeTimer.error(start);
+            throw ex;
+        }
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        long start = System.nanoTime();
+        try {
+            boolean matches = delegate.matches(rawPassword, encodedPassword);
+            matchesTimer.success(start);
+            return matches;
+        } catch (RuntimeException ex) {
+            matchesTimer.error(start);
+            throw ex;
+        }
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
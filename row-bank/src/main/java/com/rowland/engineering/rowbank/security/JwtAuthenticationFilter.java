@@ -18,6 +18,7 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
 
 @Component
 @RequiredArgsConstructor
@@ -27,6 +28,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider tokenProvider;
 
+    private final TokenRevocationService tokenRevocationService;
+
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
 
 
@@ -38,10 +41,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
 
-            if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt)) {
-                Long userId = tokenProvider.getUserIdFromJWT(jwt);
+            Optional<JwtClaims> claims = (StringUtils.hasText(jwt) ? tokenProvider.verifyToken(jwt) : Optional.<JwtClaims>empty())
+                    .filter(verified -> !tokenRevocationService.isRevoked(verified));
 
-                UserDetails userDetails = customUserDetailsService.loadUserById(userId);
+            if (claims.isPresent()) {
+                UserDetails userDetails = customUserDetailsService.loadUserById(claims.get().userId());
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
@@ -0,0 +1,6 @@
+package com.rowland.engineering.rowbank.security;
+
+import java.time.Instant;
+
+public record JwtClaims(Long userId, String tokenId, Instant expiresAt) {
+}
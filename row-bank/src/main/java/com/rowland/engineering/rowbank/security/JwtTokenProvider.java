@@ -1,80 +1,158 @@
 package com.rowland.engineering.rowbank.security;
 
 
+import com.rowland.engineering.rowbank.utils.BoundedCache;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
 
 @Service
 public class JwtTokenProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtTokenProvider.class);
 
-    @Value("${app.jwtSecret}")
-    private String jwtSecret;
-
-    @Value("${app.jwtExpirationInMs}")
-    private int jwtExpirationInMs;
-
-    public JwtTokenProvider() {
+    private final Key signingKey;
+
+    private final JwtParser jwtParser;
+
+    private final int jwtExpirationInMs;
+
+    // Keyed by a SHA-256 digest so raw bearer tokens are never retained on the heap.
+    private final BoundedCache<String, JwtClaims> verifiedTokens;
+
+    private final Counter verified;
+    private final Counter cached;
+    private final Counter invalidSignature;
+    private final Counter malformed;
+    private final Counter expired;
+    private final Counter unsupported;
+    private final Counter empty;
+
+    public JwtTokenProvider(@Value("${app.jwtSecret}") String jwtSecret,
+                            @Value("${app.jwtExpirationInMs}") int jwtExpirationInMs,
+                            @Value("${app.jwt.cache.max-size:10000}") int cacheMaxSize,
+                            MeterRegistry meterRegistry) {
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        this.jwtParser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+        this.jwtExpirationInMs = jwtExpirationInMs;
+        this.verifiedTokens = new BoundedCache<>(cacheMaxSize);
+        this.verifiedTokens.bindTo(meterRegistry, "jwt.verified-tokens");
+        this.verified = validationCounter(meterRegistry, "valid");
+        this.cached = validationCounter(meterRegistry, "cached");
+        this.invalidSignature = validationCounter(meterRegistry, "invalid_signature");
+        this.malformed = validationCounter(meterRegistry, "malformed");
+        this.expired = validationCounter(meterRegistry, "expired");
+        this.unsupported = validationCounter(meterRegistry, "unsupported");
+        this.empty = validationCounter(meterRegistry, "empty");
     }
 
 
     public String generateToken(Authentication authentication) {
-
         UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+        return generateToken(userPrincipal.getId());
+    }
+
+    public String generateToken(Long userId) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpirationInMs);
 
         return Jwts.builder()
-                .setSubject(Long.toString(userPrincipal.getId()))
-                .setIssuedAt(new Date(System.currentTimeMillis()))
+                .setId(UUID.randomUUID().toString())
+                .setSubject(Long.toString(userId))
+                .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith( getSignInKey(), SignatureAlgorithm.HS512)
+                .signWith(signingKey, SignatureAlgorithm.HS512)
                 .compact();
     }
 
-    public Long getUserIdFromJWT(String token){
-        Claims claims = Jwts
-                .parserBuilder()
-                .setSigningKey(jwtSecret)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-
-        return Long.parseLong(claims.getSubject());
-    }
-
-    private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(jwtSecret);
-        return Keys.hmacShaKeyFor(keyBytes);
+    public int getJwtExpirationInMs() {
+        return jwtExpirationInMs;
     }
 
-    public boolean validateToken(String authToken) {
+    /**
+     * Verifies the token signature and expiry once and returns its claims. Tokens
+     * that verified recently are served from the cache until they expire.
+     */
+    public Optional<JwtClaims> verifyToken(String authToken) {
+        if (!StringUtils.hasText(authToken)) {
+            empty.increment();
+            logger.error("JWT claims string is empty.");
+            return Optional.empty();
+        }
+        String digest = digest(authToken);
+        JwtClaims known = verifiedTokens.get(digest);
+        if (known != null) {
+            cached.increment();
+            return Optional.of(known);
+        }
         try {
-            Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-            return true;
+            Claims claims = jwtParser.parseClaimsJws(authToken).getBody();
+            JwtClaims jwtClaims = new JwtClaims(Long.parseLong(claims.getSubject()), claims.getId(),
+                    claims.getExpiration().toInstant());
+            verifiedTokens.put(digest, jwtClaims, claims.getExpiration().getTime());
+            verified.increment();
+            return Optional.of(jwtClaims);
         } catch (SignatureException ex) {
+            invalidSignature.increment();
             logger.error("Invalid JWT signature");
         } catch (MalformedJwtException ex) {
+            malformed.increment();
             logger.error("Invalid JWT token");
         } catch (ExpiredJwtException ex) {
+            expired.increment();
             logger.error("Expired JWT token");
         } catch (UnsupportedJwtException ex) {
+            unsupported.increment();
             logger.error("Unsupported JWT token");
         } catch (IllegalArgumentException ex) {
+            empty.increment();
             logger.error("JWT claims string is empty.");
         }
-        return false;
+        return Optional.empty();
+    }
+
+    public Long getUserIdFromJWT(String token) {
+        return verifyToken(token)
+                .map(JwtClaims::userId)
+                .orElseThrow(() -> new JwtException("Invalid JWT token"));
+    }
+
+    public boolean validateToken(String authToken) {
+        return verifyToken(authToken).isPresent();
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    private static Counter validationCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("jwt.validations")
+                .description("Bearer token validations by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
     }
 
 }
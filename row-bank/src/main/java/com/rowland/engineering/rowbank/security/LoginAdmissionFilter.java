@@ -0,0 +1,228 @@
+package com.rowland.engineering.rowbank.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rowland.engineering.rowbank.utils.RateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Admission control for sign-in. Attempts are rate limited per client address and
+ * per username, and the number of requests inside password verification is capped,
+ * so a credential-stuffing burst is turned away with a 429 before any BCrypt work
+ * starts instead of occupying every core.
+ */
+@Component
+public class LoginAdmissionFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginAdmissionFilter.class);
+
+    private static final String SIGNIN_PATH = "/api/auth/signin";
+    private static final int MAX_BODY_BYTES = 4096;
+    private static final int MAX_USERNAME_LENGTH = 254;
+
+    private final ObjectMapper objectMapper;
+    private final RateLimiter addressLimiter;
+    private final RateLimiter usernameLimiter;
+    private final Semaphore passwordChecks;
+
+    private final Counter admitted;
+    private final Counter rejectedAddress;
+    private final Counter rejectedUsername;
+    private final Counter rejectedConcurrency;
+
+    public LoginAdmissionFilter(ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.security.signin.address.per-minute:30}") int addressPerMinute,
+                                @Value("${app.security.signin.address.burst:10}") int addressBurst,
+                                @Value("${app.security.signin.username.per-minute:10}") int usernamePerMinute,
+                                @Value("${app.security.signin.username.burst:5}") int usernameBurst,
+                                @Value("${app.security.signin.max-tracked-keys:100000}") int maxTrackedKeys,
+                                @Value("${app.security.signin.max-concurrent:8}") int maxConcurrent) {
+        this.objectMapper = objectMapper;
+        this.addressLimiter = new RateLimiter(addressPerMinute, addressBurst, maxTrackedKeys);
+        this.usernameLimiter = new RateLimiter(usernamePerMinute, usernameBurst, maxTrackedKeys);
+        this.passwordChecks = new Semaphore(maxConcurrent);
+        this.addressLimiter.bindTo(meterRegistry, "signin.limiter.address");
+        this.usernameLimiter.bindTo(meterRegistry, "signin.limiter.username");
+        this.admitted = admissionCounter(meterRegistry, "admitted");
+        this.rejectedAddress = admissionCounter(meterRegistry, "rejected_address");
+        this.rejectedUsername = admissionCounter(meterRegistry, "rejected_username");
+        this.rejectedConcurrency = admissionCounter(meterRegistry, "rejected_concurrency");
+        Gauge.builder("signin.inflight", passwordChecks, permits -> maxConcurrent - permits.availablePermits())
+                .description("Sign-in requests currently verifying a password")
+                .register(meterRegistry);
+        Gauge.builder("signin.inflight.limit", () -> maxConcurrent)
+                .description("Maximum concurrent sign-in password checks")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || !SIGNIN_PATH.equals(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain) throws ServletException, IOException {
+        long retryAfterMillis = addressLimiter.tryAcquire(request.getRemoteAddr());
+        if (retryAfterMillis > 0) {
+            rejectedAddress.increment();
+            reject(response, "Too many sign-in attempts from this address", retryAfterMillis);
+            return;
+        }
+
+        byte[] body = request.getInputStream().readNBytes(MAX_BODY_BYTES + 1);
+        if (body.length > MAX_BODY_BYTES) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
+        String username = usernameOf(body);
+        if (username != null) {
+            retryAfterMillis = usernameLimiter.tryAcquire(username);
+            if (retryAfterMillis > 0) {
+                rejectedUsername.increment();
+                reject(response, "Too many sign-in attempts for this account", retryAfterMillis);
+                return;
+            }
+        }
+
+        if (!passwordChecks.tryAcquire()) {
+            rejectedConcurrency.increment();
+            reject(response, "Sign-in is busy, retry shortly", 1000);
+            return;
+        }
+        try {
+            admitted.increment();
+            filterChain.doFilter(new CachedBodyRequest(request, body), response);
+        } finally {
+            passwordChecks.release();
+        }
+    }
+
+    // Unreadable bodies fall through to the controller, which rejects them as usual.
+    private String usernameOf(byte[] body) {
+        try {
+            JsonNode usernameOrEmail = objectMapper.readTree(body).path("usernameOrEmail");
+            if (!usernameOrEmail.isTextual()) {
+                return null;
+            }
+            return limiterKey(usernameOrEmail.asText());
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    // Variants of one name share a bucket, so changing case, padding or Unicode form
+    // does not buy an attacker more attempts.
+    private static String limiterKey(String usernameOrEmail) {
+        String key = Normalizer.normalize(usernameOrEmail, Normalizer.Form.NFKC).strip().toLowerCase(Locale.ROOT);
+        return key.length() > MAX_USERNAME_LENGTH ? key.substring(0, MAX_USERNAME_LENGTH) : key;
+    }
+
+    private void reject(HttpServletResponse response, String message, long retryAfterMillis) throws IOException {
+        logger.debug("Sign-in rejected: {}", message);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, (retryAfterMillis + 999) / 1000)));
+        response.setContentType(MediaType.APPLICATION_PROBLEM_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+                ProblemDetail.forStatusAndDetail(HttpStatus.TOO_MANY_REQUESTS, message));
+    }
+
+    private static Counter admissionCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("signin.admissions")
+                .description("Sign-in attempts by admission outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    // The whole body is already in memory, so it is available at once.
+                    try {
+                        readListener.onDataAvailable();
+                        readListener.onAllDataRead();
+                    } catch (IOException ex) {
+                        readListener.onError(ex);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
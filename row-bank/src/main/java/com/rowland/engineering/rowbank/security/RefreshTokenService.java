@@ -0,0 +1,102 @@
+package com.rowland.engineering.rowbank.security;
+
+import com.rowland.engineering.rowbank.model.RefreshToken;
+import com.rowland.engineering.rowbank.repository.RefreshTokenRepository;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Issues and rotates opaque refresh tokens. Only their SHA-256 is stored. A token
+ * can be exchanged once; presenting it a second time means it leaked, so every
+ * token descended from the same sign-in is revoked.
+ */
+@Service
+public class RefreshTokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final long ttlMs;
+    private final SecureRandom random = new SecureRandom();
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+                               @Value("${app.security.refresh-token.ttl-ms:1209600000}") long ttlMs) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.ttlMs = ttlMs;
+    }
+
+    public record Rotation(Long userId, String refreshToken) {
+    }
+
+    @Transactional
+    public String issue(Long userId) {
+        return issue(userId, UUID.randomUUID().toString());
+    }
+
+    @Transactional(dontRollbackOn = BadCredentialsException.class)
+    public Rotation rotate(String rawToken) {
+        String tokenHash = hash(rawToken);
+        RefreshToken token = refreshTokenRepository.findById(tokenHash)
+                .orElseThrow(() -> new BadCredentialsException("Invalid refresh token"));
+        Instant now = Instant.now();
+        if (token.isRevoked() || !token.getExpiresAt().isAfter(now)) {
+            throw new BadCredentialsException("Refresh token expired or revoked");
+        }
+        if (refreshTokenRepository.markUsed(tokenHash, now) == 0) {
+            refreshTokenRepository.revokeFamily(token.getFamilyId());
+            logger.warn("Refresh token reuse for user {}, revoked token family {}", token.getUserId(), token.getFamilyId());
+            throw new BadCredentialsException("Refresh token reuse detected");
+        }
+        return new Rotation(token.getUserId(), issue(token.getUserId(), token.getFamilyId()));
+    }
+
+    @Transactional
+    public void revoke(String rawToken) {
+        refreshTokenRepository.findById(hash(rawToken))
+                .ifPresent(token -> refreshTokenRepository.revokeFamily(token.getFamilyId()));
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.refresh-token.purge-interval-ms:3600000}",
+            initialDelayString = "${app.security.refresh-token.purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        int purged = refreshTokenRepository.deleteExpired(Instant.now());
+        if (purged > 0) {
+            logger.info("Purged {} expired refresh tokens", purged);
+        }
+    }
+
+    private String issue(Long userId, String familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String rawToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        Instant now = Instant.now();
+        refreshTokenRepository.save(new RefreshToken(hash(rawToken), userId, familyId, now, now.plusMillis(ttlMs)));
+        return rawToken;
+    }
+
+    private static String hash(String rawToken) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(rawToken.getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.rowland.engineering.rowbank.security;
+
+import com.rowland.engineering.rowbank.model.RevokedToken;
+import com.rowland.engineering.rowbank.repository.RevokedTokenRepository;
+import com.rowland.engineering.rowbank.utils.BloomFilter;
+import com.rowland.engineering.rowbank.utils.BoundedCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Access-token deny list. Every unexpired revoked {@code jti} is held in a Bloom
+ * filter, so the common case - a token that was never revoked - is answered from
+ * memory; only filter hits are confirmed against {@code revoked_tokens}. Revocations
+ * made by other instances are picked up by polling, and the filter is rebuilt from
+ * the table at startup and after expired rows are purged.
+ */
+@Service
+public class TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    // Re-reads a little history on each poll so rows committed late are not missed.
+    private static final Duration POLL_OVERLAP = Duration.ofSeconds(5);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final int expectedRevocations;
+    private final double falsePositiveRate;
+    private final BoundedCache<String, Boolean> confirmed;
+
+    private final Counter clear;
+    private final Counter falsePositive;
+    private final Counter revoked;
+
+    private volatile BloomFilter filter;
+    private volatile Instant polledUntil = Instant.EPOCH;
+
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.security.revocation.expected-revocations:100000}") int expectedRevocations,
+                                  @Value("${app.security.revocation.false-positive-rate:0.001}") double falsePositiveRate) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.expectedRevocations = expectedRevocations;
+        this.falsePositiveRate = falsePositiveRate;
+        this.confirmed = new BoundedCache<>(10_000);
+        this.confirmed.bindTo(meterRegistry, "jwt.revocations.confirmed");
+        this.filter = new BloomFilter(expectedRevocations, falsePositiveRate);
+        this.clear = revocationCounter(meterRegistry, "clear");
+        this.falsePositive = revocationCounter(meterRegistry, "false_positive");
+        this.revoked = revocationCounter(meterRegistry, "revoked");
+    }
+
+    @PostConstruct
+    void load() {
+        rebuild();
+    }
+
+    /**
+     * Tokens without a {@code jti} predate revocation support and are refused, as
+     * they could never be revoked.
+     */
+    public boolean isRevoked(JwtClaims claims) {
+        String tokenId = claims.tokenId();
+        if (tokenId == null) {
+            return true;
+        }
+        if (!filter.mightContain(tokenId)) {
+            clear.increment();
+            return false;
+        }
+        Boolean known = confirmed.get(tokenId);
+        boolean isRevoked = known != null ? known : revokedTokenRepository.existsById(tokenId);
+        if (known == null) {
+            confirmed.put(tokenId, isRevoked, claims.expiresAt().toEpochMilli());
+        }
+        (isRevoked ? revoked : falsePositive).increment();
+        return isRevoked;
+    }
+
+    @Transactional
+    public void revoke(JwtClaims claims) {
+        if (claims.tokenId() == null) {
+            return;
+        }
+        revokedTokenRepository.save(new RevokedToken(claims.tokenId(), claims.userId(), Instant.now(), claims.expiresAt()));
+        filter.put(claims.tokenId());
+        confirmed.put(claims.tokenId(), true, claims.expiresAt().toEpochMilli());
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.revocation.poll-interval-ms:5000}",
+            initialDelayString = "${app.security.revocation.poll-interval-ms:5000}")
+    public void pollRevocations() {
+        Instant now = Instant.now();
+        List<String> tokenIds = revokedTokenRepository.findRevokedSince(polledUntil.minus(POLL_OVERLAP), now);
+        BloomFilter current = filter;
+        tokenIds.forEach(current::put);
+        tokenIds.forEach(confirmed::invalidate);
+        polledUntil = now;
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.revocation.purge-interval-ms:3600000}",
+            initialDelayString = "${app.security.revocation.purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        int purged = revokedTokenRepository.deleteExpired(Instant.now());
+        if (purged > 0) {
+            logger.info("Purged {} expired token revocations", purged);
+            rebuild();
+        }
+    }
+
+    // Bits cannot be cleared, so dropping expired revocations means building a new filter.
+    private void rebuild() {
+        long start = System.nanoTime();
+        Instant now = Instant.now();
+        List<String> tokenIds = revokedTokenRepository.findUnexpiredTokenIds(now);
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedRevocations, tokenIds.size() * 2), falsePositiveRate);
+        tokenIds.forEach(rebuilt::put);
+        filter = rebuilt;
+        polledUntil = now;
+        logger.info("Loaded {} token revocations in {} ms", tokenIds.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static Counter revocationCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("jwt.revocation.checks")
+                .description("Access token revocation checks by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
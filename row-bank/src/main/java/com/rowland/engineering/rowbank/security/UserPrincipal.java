@@ -1,6 +1,8 @@
 package com.rowland.engineering.rowbank.security;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.rowland.engineering.rowbank.model.Role;
+import com.rowland.engineering.rowbank.model.RoleName;
 import com.rowland.engineering.rowbank.model.User;
 import lombok.Data;
 import org.springframework.security.core.GrantedAuthority;
@@ -8,13 +10,23 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
-import java.util.List;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @Data
 public class UserPrincipal implements UserDetails {
+    private static final Map<RoleName, List<GrantedAuthority>> SINGLE_ROLE_AUTHORITIES = new EnumMap<>(RoleName.class);
+
+    static {
+        for (RoleName roleName : RoleName.values()) {
+            SINGLE_ROLE_AUTHORITIES.put(roleName, List.of(new SimpleGrantedAuthority(roleName.name())));
+        }
+    }
+
     private Long id;
     private String firstName;
     private String lastName;
@@ -54,10 +66,6 @@ public class UserPrincipal implements UserDetails {
 
 
     public static UserPrincipal create(User user) {
-        List<GrantedAuthority> authorities = user.getRoles().stream().map(role ->
-                new SimpleGrantedAuthority(role.getName().name())
-        ).collect(Collectors.toList());
-
         return new UserPrincipal(
                 user.getId(),
                 user.getFirstName(),
@@ -66,10 +74,23 @@ public class UserPrincipal implements UserDetails {
                 user.getUsername(),
                 user.getEmail(),
                 user.getPassword(),
-                authorities
+                authoritiesFor(user.getRoles())
         );
     }
 
+    // Authority lists are immutable and shared, so cached principals do not each hold their own copy.
+    private static List<GrantedAuthority> authoritiesFor(Set<Role> roles) {
+        if (roles == null || roles.isEmpty()) {
+            return List.of();
+        }
+        if (roles.size() == 1) {
+            return SINGLE_ROLE_AUTHORITIES.get(roles.iterator().next().getName());
+        }
+        return roles.stream()
+                .map(role -> SINGLE_ROLE_AUTHORITIES.get(role.getName()).get(0))
+                .toList();
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
@@ -0,0 +1,118 @@
+package com.rowland.engineering.rowbank.service;
+
+import com.rowland.engineering.rowbank.exception.AppException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out unique 10-digit account numbers: a 9-digit serial followed by a Luhn
+ * check digit. Serials are reserved from the database in blocks (hi/lo), so only
+ * one signup per block pays for a database round-trip and the rest are served
+ * lock-free from memory.
+ */
+@Service
+public class AccountNumberAllocator {
+
+    private static final long MAX_SERIAL = 999_999_999L;
+    private static final int RESERVE_ATTEMPTS = 3;
+
+    private final AccountNumberSequenceService sequenceService;
+    private final int blockSize;
+    private final long initialValue;
+    private final ReentrantLock refillLock = new ReentrantLock();
+
+    private volatile Block block;
+
+    public AccountNumberAllocator(AccountNumberSequenceService sequenceService,
+                                  @Value("${app.account-number.block-size:100}") int blockSize,
+                                  @Value("${app.account-number.initial-value:1}") long initialValue) {
+        this.sequenceService = sequenceService;
+        this.blockSize = blockSize;
+        this.initialValue = initialValue;
+    }
+
+    public String nextAccountNumber() {
+        while (true) {
+            Block current = block;
+            if (current != null) {
+                long serial = current.next.getAndIncrement();
+                if (serial < current.end) {
+                    return format(serial);
+                }
+            }
+            refill(current);
+        }
+    }
+
+    private void refill(Block exhausted) {
+        refillLock.lock();
+        try {
+            if (block != exhausted) {
+                return;
+            }
+            long start = reserve();
+            if (start + blockSize - 1 > MAX_SERIAL) {
+                throw new AppException("Account number space exhausted");
+            }
+            block = new Block(start, start + blockSize);
+        } finally {
+            refillLock.unlock();
+        }
+    }
+
+    private long reserve() {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return sequenceService.reserveBlock(blockSize, initialValue);
+            } catch (DataIntegrityViolationException ex) {
+                // Another instance created the sequence row first; retry against it.
+                if (attempt == RESERVE_ATTEMPTS) {
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    private static String format(long serial) {
+        char[] digits = new char[10];
+        long remaining = serial;
+        for (int i = 8; i >= 0; i--) {
+            digits[i] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        digits[9] = (char) ('0' + checkDigit(serial));
+        return new String(digits);
+    }
+
+    // Luhn check digit over the nine serial digits.
+    private static int checkDigit(long serial) {
+        int sum = 0;
+        boolean doubleDigit = true;
+        for (long remaining = serial, i = 0; i < 9; i++, remaining /= 10) {
+            int digit = (int) (remaining % 10);
+            if (doubleDigit) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubleDigit = !doubleDigit;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.rowland.engineering.rowbank.service;
+
+import com.rowland.engineering.rowbank.model.AccountNumberSequence;
+import com.rowland.engineering.rowbank.repository.AccountNumberSequenceRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+@Service
+@RequiredArgsConstructor
+public class AccountNumberSequenceService {
+    static final String SEQUENCE_NAME = "account_number";
+
+    private final AccountNumberSequenceRepository sequenceRepository;
+
+    /**
+     * Reserves {@code size} consecutive serials and returns the first one. Runs in its
+     * own transaction so the row lock is held only for the reservation.
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public long reserveBlock(int size, long initialValue) {
+        AccountNumberSequence sequence = sequenceRepository.findForUpdate(SEQUENCE_NAME)
+                .orElseGet(() -> sequenceRepository.saveAndFlush(new AccountNumberSequence(SEQUENCE_NAME, initialValue)));
+        long start = sequence.getNextValue();
+        sequence.setNextValue(start + size);
+        return start;
+    }
+}
@@ -0,0 +1,122 @@
+package com.rowland.engineering.rowbank.service;
+
+import com.rowland.engineering.rowbank.dto.ApiResponse;
+import com.rowland.engineering.rowbank.exception.BadRequestException;
+import com.rowland.engineering.rowbank.exception.IdempotencyKeyReuseException;
+import com.rowland.engineering.rowbank.model.IdempotencyRecord;
+import com.rowland.engineering.rowbank.repository.IdempotencyRecordRepository;
+import com.rowland.engineering.rowbank.service.ledger.LedgerEngine;
+import com.rowland.engineering.rowbank.utils.BoundedCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Makes requests carrying an {@code Idempotency-Key} safe to retry. Recent keys are
+ * held in memory, so duplicates arriving while the first request is still running
+ * wait for its outcome instead of racing it. Completed outcomes are stored in
+ * {@code idempotency_keys} in the same transaction as the work itself, so a replay
+ * after a restart still returns the original response.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final BoundedCache<String, Attempt> attempts;
+    private final long ttlMs;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.idempotency.cache.max-size:10000}") int cacheMaxSize,
+                              @Value("${app.idempotency.ttl-ms:86400000}") long ttlMs) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.attempts = new BoundedCache<>(cacheMaxSize, ttlMs);
+        this.attempts.bindTo(meterRegistry, "idempotency.keys");
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Runs {@code work} at most once per user and key. The work receives the record
+     * to persist alongside its own changes and must fill in the response on it.
+     */
+    public ApiResponse execute(Long userId, String key, String fingerprint,
+                               Function<IdempotencyRecord, ApiResponse> work) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String id = userId + ":" + key;
+        Attempt mine = new Attempt(fingerprint, new CompletableFuture<>());
+        Attempt attempt = attempts.get(id, ignored -> mine);
+        if (attempt != mine) {
+            checkFingerprint(attempt.fingerprint(), fingerprint);
+            return LedgerEngine.await(attempt.response());
+        }
+        try {
+            ApiResponse response = replayOrRun(id, userId, fingerprint, work);
+            mine.response().complete(response);
+            return response;
+        } catch (RuntimeException ex) {
+            // Let the client retry a failed attempt with the same key.
+            attempts.invalidate(id);
+            mine.response().completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-interval-ms:600000}",
+            initialDelayString = "${app.idempotency.purge-interval-ms:600000}")
+    @Transactional
+    public void purgeExpired() {
+        int purged = idempotencyRecordRepository.deleteExpired(Instant.now());
+        if (purged > 0) {
+            logger.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    public static String fingerprint(String request) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(request.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    private ApiResponse replayOrRun(String id, Long userId, String fingerprint,
+                                    Function<IdempotencyRecord, ApiResponse> work) {
+        Instant now = Instant.now();
+        Optional<IdempotencyRecord> stored = idempotencyRecordRepository.findById(id);
+        if (stored.isPresent() && stored.get().getExpiresAt().isAfter(now)) {
+            checkFingerprint(stored.get().getFingerprint(), fingerprint);
+            return new ApiResponse(stored.get().getSuccess(), stored.get().getMessage());
+        }
+        stored.ifPresent(idempotencyRecordRepository::delete);
+        return work.apply(new IdempotencyRecord(id, userId, fingerprint, now, now.plusMillis(ttlMs)));
+    }
+
+    private static void checkFingerprint(String original, String fingerprint) {
+        if (!original.equals(fingerprint)) {
+            throw new IdempotencyKeyReuseException("Idempotency-Key was already used for a different request");
+        }
+    }
+
+    private record Attempt(String fingerprint, CompletableFuture<ApiResponse> response) {
+    }
+}
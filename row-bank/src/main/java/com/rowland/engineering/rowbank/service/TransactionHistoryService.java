@@ -0,0 +1,110 @@
+package com.rowland.engineering.rowbank.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.rowland.engineering.rowbank.dto.TransactionPage;
+import com.rowland.engineering.rowbank.dto.TransactionResponse;
+import com.rowland.engineering.rowbank.exception.BadRequestException;
+import com.rowland.engineering.rowbank.model.TransactionType;
+import com.rowland.engineering.rowbank.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Reads a user's transaction history newest first. Pages are addressed by a
+ * keyset cursor on (timestamp, id) so every page is an index range scan, no matter
+ * how deep the client pages.
+ */
+@Service
+@RequiredArgsConstructor
+public class TransactionHistoryService {
+
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int STREAM_FLUSH_INTERVAL = 1000;
+
+    // Bounds of the MySQL DATETIME range, used when the client leaves the range open.
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1000, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    private final TransactionRepository transactionRepository;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(readOnly = true)
+    public TransactionPage findHistory(Long userId, LocalDateTime from, LocalDateTime to,
+                                       TransactionType type, String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        Cursor after = cursor == null ? new Cursor(LATEST, Long.MAX_VALUE) : decodeCursor(cursor);
+
+        List<TransactionResponse> rows = transactionRepository.findHistoryPage(userId,
+                from == null ? EARLIEST : from, to == null ? LATEST : to, type,
+                after.timestamp(), after.id(), PageRequest.of(0, size + 1));
+
+        String nextCursor = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            TransactionResponse last = rows.get(size - 1);
+            nextCursor = encodeCursor(last.getTimestamp(), last.getId());
+        }
+        return new TransactionPage(rows, nextCursor);
+    }
+
+    /**
+     * Writes the whole matching history as newline-delimited JSON while rows are
+     * read from an open cursor, so memory use does not grow with the history size.
+     */
+    @Transactional(readOnly = true)
+    public void streamHistory(Long userId, LocalDateTime from, LocalDateTime to,
+                              TransactionType type, OutputStream output) throws IOException {
+        try (Stream<TransactionResponse> rows = transactionRepository.streamHistory(userId,
+                from == null ? EARLIEST : from, to == null ? LATEST : to, type);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+            ObjectWriter rowWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            generator.setRootValueSeparator(null);
+            int written = 0;
+            for (TransactionResponse row : (Iterable<TransactionResponse>) rows::iterator) {
+                rowWriter.writeValue(generator, row);
+                generator.writeRaw('\n');
+                if (++written % STREAM_FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                }
+            }
+        }
+    }
+
+    private static String encodeCursor(LocalDateTime timestamp, Long id) {
+        String raw = timestamp + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            if (separator < 0) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            return new Cursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    private record Cursor(LocalDateTime timestamp, long id) {
+    }
+}
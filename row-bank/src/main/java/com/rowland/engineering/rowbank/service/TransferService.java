@@ -0,0 +1,26 @@
+package com.rowland.engineering.rowbank.service;
+
+import com.rowland.engineering.rowbank.dto.TransferRequest;
+import com.rowland.engineering.rowbank.dto.TransferResponse;
+import com.rowland.engineering.rowbank.exception.UserNotFoundException;
+import com.rowland.engineering.rowbank.repository.UserRepository;
+import com.rowland.engineering.rowbank.service.ledger.LedgerEngine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+@Service
+@RequiredArgsConstructor
+public class TransferService {
+    private final UserRepository userRepository;
+    private final LedgerEngine ledgerEngine;
+
+    public TransferResponse transfer(Long fromUserId, TransferRequest request) {
+        Long toUserId = userRepository.findIdByAccountNumber(request.getToAccountNumber())
+                .orElseThrow(() -> new UserNotFoundException("Account number: " + request.getToAccountNumber() + " not found"));
+        String description = request.getDescription() == null ? "Transfer" : request.getDescription();
+        String reference = LedgerEngine.await(
+                ledgerEngine.transfer(fromUserId, toUserId, request.getAmount(), description));
+        return new TransferResponse(reference, request.getToAccountNumber(), request.getAmount(),
+                ledgerEngine.balanceOf(fromUserId));
+    }
+}
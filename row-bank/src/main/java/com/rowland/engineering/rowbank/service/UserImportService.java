@@ -0,0 +1,286 @@
+package com.rowland.engineering.rowbank.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rowland.engineering.rowbank.dto.ImportReport;
+import com.rowland.engineering.rowbank.dto.RegisterRequest;
+import com.rowland.engineering.rowbank.exception.AppException;
+import com.rowland.engineering.rowbank.exception.BadRequestException;
+import com.rowland.engineering.rowbank.model.Role;
+import com.rowland.engineering.rowbank.model.RoleName;
+import com.rowland.engineering.rowbank.model.User;
+import com.rowland.engineering.rowbank.repository.RoleRepository;
+import com.rowland.engineering.rowbank.repository.UserRepository;
+import com.rowland.engineering.rowbank.security.BoundedPasswordEncoder;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Streams customer rows from NDJSON or CSV, validates them against the
+ * {@link RegisterRequest} constraints and inserts them in chunks. Passwords of a
+ * chunk are hashed on the shared password hashing pool, waiting for room when
+ * sign-ins keep it busy, and each chunk is persisted with Hibernate JDBC batching. Rows that fail are reported individually, up to
+ * {@code app.import.max-reported-errors} of them, and never abort the file.
+ */
+@Service
+public class UserImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserImportService.class);
+
+    private static final List<String> CSV_COLUMNS = List.of(
+            "firstName", "lastName", "dateOfBirth", "username", "openingBalance", "email", "password");
+
+    private final UserRepository userRepository;
+    private final RoleRepository roleRepository;
+    private final BoundedPasswordEncoder passwordEncoder;
+    private final AccountNumberAllocator accountNumberAllocator;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final int maxReportedErrors;
+
+    public UserImportService(UserRepository userRepository,
+                             RoleRepository roleRepository,
+                             BoundedPasswordEncoder passwordEncoder,
+                             AccountNumberAllocator accountNumberAllocator,
+                             Validator validator,
+                             ObjectMapper objectMapper,
+                             @Value("${app.import.chunk-size:500}") int chunkSize,
+                             @Value("${app.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.userRepository = userRepository;
+        this.roleRepository = roleRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.accountNumberAllocator = accountNumberAllocator;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public ImportReport importNdjson(InputStream input) {
+        return importRows(input, false);
+    }
+
+    public ImportReport importCsv(InputStream input) {
+        return importRows(input, true);
+    }
+
+    private ImportReport importRows(InputStream input, boolean csv) {
+        Role userRole = roleRepository.findByName(RoleName.ROLE_USER)
+                .orElseThrow(() -> new AppException("User Role not set."));
+        ImportReport report = new ImportReport(maxReportedErrors);
+        List<Row> chunk = new ArrayList<>(chunkSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            long lineNumber = 0;
+            Map<String, Integer> header = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (csv && header == null) {
+                    header = parseHeader(line);
+                    continue;
+                }
+                report.setTotalRows(report.getTotalRows() + 1);
+                RegisterRequest request;
+                try {
+                    request = csv ? parseCsv(line, header) : objectMapper.readValue(line, RegisterRequest.class);
+                } catch (JsonProcessingException | IllegalArgumentException | DateTimeException ex) {
+                    report.addError(lineNumber, null, List.of("Unreadable row: " + ex.getMessage()));
+                    continue;
+                }
+                List<String> violations = validate(request);
+                if (!violations.isEmpty()) {
+                    report.addError(lineNumber, request.getUsername(), violations);
+                    continue;
+                }
+                chunk.add(new Row(lineNumber, request));
+                if (chunk.size() == chunkSize) {
+                    writeChunk(chunk, userRole, report);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException ex) {
+            throw new AppException("Could not read import file", ex);
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(chunk, userRole, report);
+        }
+        logger.info("User import finished: {} rows, {} imported, {} failed",
+                report.getTotalRows(), report.getImported(), report.getFailed());
+        return report;
+    }
+
+    private void writeChunk(List<Row> chunk, Role userRole, ImportReport report) {
+        List<Row> accepted = rejectDuplicates(chunk, report);
+        if (accepted.isEmpty()) {
+            return;
+        }
+        List<String> hashes = passwordEncoder.encodeAll(accepted.stream()
+                .map(row -> row.request.getPassword())
+                .toList());
+
+        List<User> users = new ArrayList<>(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            RegisterRequest request = accepted.get(i).request;
+            User user = new User(request.getFirstName(), request.getLastName(), request.getDateOfBirth(),
+                    request.getUsername(), request.getEmail(), hashes.get(i), request.getOpeningBalance());
+            user.setAccountNumber(accountNumberAllocator.nextAccountNumber());
+            user.setRoles(Set.of(userRole));
+            users.add(user);
+        }
+
+        try {
+            userRepository.saveAll(users);
+            report.setImported(report.getImported() + users.size());
+        } catch (RuntimeException ex) {
+            logger.warn("Import chunk of {} rows failed, retrying rows individually", users.size(), ex);
+            for (int i = 0; i < users.size(); i++) {
+                saveSingle(accepted.get(i), users.get(i), report);
+            }
+        }
+    }
+
+    private void saveSingle(Row row, User user, ImportReport report) {
+        user.setId(null);
+        try {
+            userRepository.save(user);
+            report.setImported(report.getImported() + 1);
+        } catch (RuntimeException ex) {
+            report.addError(row.line, user.getUsername(), List.of(rootMessage(ex)));
+        }
+    }
+
+    private List<Row> rejectDuplicates(List<Row> chunk, ImportReport report) {
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        chunk.forEach(row -> {
+            usernames.add(row.request.getUsername());
+            if (row.request.getEmail() != null) {
+                emails.add(row.request.getEmail());
+            }
+        });
+        Set<String> takenUsernames = new HashSet<>(userRepository.findExistingUsernames(usernames));
+        Set<String> takenEmails = emails.isEmpty() ? new HashSet<>() : new HashSet<>(userRepository.findExistingEmails(emails));
+
+        List<Row> accepted = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            String username = row.request.getUsername();
+            String email = row.request.getEmail();
+            if (!takenUsernames.add(username)) {
+                report.addError(row.line, username, List.of("Username is already taken!"));
+            } else if (email != null && !takenEmails.add(email)) {
+                report.addError(row.line, username, List.of("Email Address already in use!"));
+            } else {
+                accepted.add(row);
+            }
+        }
+        return accepted;
+    }
+
+    private List<String> validate(RegisterRequest request) {
+        Set<ConstraintViolation<RegisterRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return List.of();
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .toList();
+    }
+
+    private Map<String, Integer> parseHeader(String line) {
+        List<String> columns = splitCsv(line);
+        Map<String, Integer> header = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            header.put(columns.get(i).trim(), i);
+        }
+        if (!header.containsKey("username") || !header.containsKey("password")) {
+            throw new BadRequestException("CSV header must name the columns " + CSV_COLUMNS);
+        }
+        return header;
+    }
+
+    private RegisterRequest parseCsv(String line, Map<String, Integer> header) {
+        List<String> fields = splitCsv(line);
+        String dateOfBirth = field(fields, header, "dateOfBirth");
+        String openingBalance = field(fields, header, "openingBalance");
+        return RegisterRequest.builder()
+                .firstName(field(fields, header, "firstName"))
+                .lastName(field(fields, header, "lastName"))
+                .dateOfBirth(dateOfBirth == null ? null
+                        : Date.from(LocalDate.parse(dateOfBirth).atStartOfDay(ZoneOffset.UTC).toInstant()))
+                .username(field(fields, header, "username"))
+                .openingBalance(openingBalance == null ? null : new BigDecimal(openingBalance))
+                .email(field(fields, header, "email"))
+                .password(field(fields, header, "password"))
+                .build();
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> header, String column) {
+        Integer index = header.get(column);
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // Splits one CSV record, honouring double-quoted fields and "" escapes.
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    private static String rootMessage(Throwable ex) {
+        Throwable cause = ex;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+
+    private record Row(long line, RegisterRequest request) {
+    }
+}
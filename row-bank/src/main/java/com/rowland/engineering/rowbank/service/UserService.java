@@ -1,60 +1,137 @@
 package com.rowland.engineering.rowbank.service;
 
+import com.rowland.engineering.rowbank.dto.ApiResponse;
 import com.rowland.engineering.rowbank.dto.MakeDeposit;
+import com.rowland.engineering.rowbank.dto.ResourceVersion;
+import com.rowland.engineering.rowbank.dto.UserProfileRow;
 import com.rowland.engineering.rowbank.dto.UserResponse;
 import com.rowland.engineering.rowbank.dto.UserSummary;
 import com.rowland.engineering.rowbank.exception.UserNotFoundException;
-import com.rowland.engineering.rowbank.model.Transaction;
-import com.rowland.engineering.rowbank.model.TransactionType;
-import com.rowland.engineering.rowbank.model.User;
-import com.rowland.engineering.rowbank.repository.TransactionRepository;
+import com.rowland.engineering.rowbank.model.LedgerMode;
+import com.rowland.engineering.rowbank.model.RoleName;
 import com.rowland.engineering.rowbank.repository.UserRepository;
-import jakarta.transaction.Transactional;
-import lombok.RequiredArgsConstructor;
+import com.rowland.engineering.rowbank.service.ledger.LedgerEngine;
+import com.rowland.engineering.rowbank.utils.OperationTimer;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
-@RequiredArgsConstructor
 @Service
 public class UserService {
     private final UserRepository userRepository;
-    private final TransactionRepository transactionRepository;
-
-    @Transactional
-    public void makeDeposit(MakeDeposit deposit, Long userId) {
-        Optional<User> foundUser = userRepository.findById(userId);
-        if (foundUser.isPresent()) {
-            User user = foundUser.get();
-            user.setBalance(user.getBalance().add(deposit.getDepositAmount()));
-            Transaction transaction = Transaction.builder()
-                    .transactionType(TransactionType.CREDIT)
-                    .user(user)
-                    .build();
-            transactionRepository.save(transaction);
-            userRepository.save(user);
-        } else {
-            throw new UserNotFoundException("User with id: " +userId+ " not found");
+    private final LedgerEngine ledgerEngine;
+    private final IdempotencyService idempotencyService;
+    private final OperationTimer makeDepositTimer;
+    private final OperationTimer findUserDetailsTimer;
+
+    public UserService(UserRepository userRepository,
+                       LedgerEngine ledgerEngine,
+                       IdempotencyService idempotencyService,
+                       MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.ledgerEngine = ledgerEngine;
+        this.idempotencyService = idempotencyService;
+        this.makeDepositTimer = OperationTimer.register(meterRegistry, "service", "makeDeposit");
+        this.findUserDetailsTimer = OperationTimer.register(meterRegistry, "service", "findUserDetails");
+    }
+
+    public ApiResponse makeDeposit(MakeDeposit deposit, Long userId, String idempotencyKey) {
+        long start = System.nanoTime();
+        try {
+            ApiResponse response = deposit(deposit, userId, idempotencyKey);
+            makeDepositTimer.success(start);
+            return response;
+        } catch (RuntimeException ex) {
+            makeDepositTimer.error(start);
+            throw ex;
         }
     }
 
     public Optional<UserResponse> findUserDetails(Long userId) {
-        Optional<User> foundUser = Optional.ofNullable(userRepository.findById(userId)
-                .orElseThrow(() -> new UserNotFoundException("User with id: "+ userId + "not found")));
-
-        return foundUser.stream().map(user -> {
-            UserResponse userDetail = new UserResponse();
-            userDetail.setId(user.getId());
-            userDetail.setUsername(user.getUsername());
-            userDetail.setAccountNumber(user.getAccountNumber());
-            userDetail.setUsername(user.getUsername());
-            userDetail.setEmail(user.getEmail());
-            userDetail.setBalance(user.getBalance());
-            userDetail.setFirstName(user.getFirstName());
-            userDetail.setLastName(user.getLastName());
-            userDetail.setDateOfBirth(user.getDateOfBirth());
-            userDetail.setRoles(user.getRoles());
-            return userDetail;
-        }).findFirst();
+        long start = System.nanoTime();
+        try {
+            Optional<UserResponse> userDetails = loadUserDetails(userId);
+            findUserDetailsTimer.success(start);
+            return userDetails;
+        } catch (RuntimeException ex) {
+            findUserDetailsTimer.error(start);
+            throw ex;
+        }
+    }
+
+    private ApiResponse deposit(MakeDeposit deposit, Long userId, String idempotencyKey) {
+        BigDecimal amount = deposit.getDepositAmount();
+        ApiResponse response = new ApiResponse(true, "Account successfully credited with: #" + amount);
+        if (idempotencyKey == null) {
+            LedgerEngine.await(ledgerEngine.deposit(userId, amount, "Deposit"));
+            return response;
+        }
+        String fingerprint = IdempotencyService.fingerprint("deposit|" + (amount == null ? "" : amount.toPlainString()));
+        return idempotencyService.execute(userId, idempotencyKey, fingerprint, record -> {
+            record.setSuccess(response.getSuccess());
+            record.setMessage(response.getMessage());
+            LedgerEngine.await(ledgerEngine.deposit(userId, amount, "Deposit", null, record));
+            return response;
+        });
+    }
+
+    /**
+     * Validators of the current profile, read without loading it: one indexed probe
+     * for the update time plus the in-memory ledger balance.
+     */
+    public ResourceVersion findUserVersion(Long userId) {
+        Instant updatedAt = userRepository.findUpdatedAtById(userId)
+                .orElseThrow(() -> new UserNotFoundException("User with id: "+ userId + "not found"));
+        return versionOf(updatedAt, ledgerEngine.balanceOf(userId));
+    }
+
+    public ResourceVersion versionOf(UserResponse userDetail) {
+        return versionOf(userDetail.getUpdatedAt(), userDetail.getBalance());
+    }
+
+    // Append-only deposits never touch users.updated_at, so only the ETag, which also
+    // covers the balance, can be trusted there.
+    private ResourceVersion versionOf(Instant updatedAt, BigDecimal balance) {
+        String etag = Long.toHexString(updatedAt.toEpochMilli()) + "-"
+                + Integer.toHexString(balance.stripTrailingZeros().hashCode());
+        return new ResourceVersion(etag, ledgerEngine.getMode() == LedgerMode.MUTABLE ? updatedAt : null);
+    }
+
+    private Optional<UserResponse> loadUserDetails(Long userId) {
+        List<UserProfileRow> rows = userRepository.findProfileRows(userId);
+        if (rows.isEmpty()) {
+            throw new UserNotFoundException("User with id: "+ userId + "not found");
+        }
+        UserResponse userDetail = toUserResponse(rows);
+        // The ledger balance, which in append-only mode is not the stored column.
+        userDetail.setBalance(ledgerEngine.balanceOf(userId));
+        return Optional.of(userDetail);
+    }
+
+    static UserResponse toUserResponse(List<UserProfileRow> rows) {
+        UserProfileRow row = rows.get(0);
+        Set<RoleName> roles = EnumSet.noneOf(RoleName.class);
+        for (UserProfileRow roleRow : rows) {
+            if (roleRow.roleName() != null) {
+                roles.add(roleRow.roleName());
+            }
+        }
+        UserResponse userDetail = new UserResponse();
+        userDetail.setId(row.id());
+        userDetail.setUsername(row.username());
+        userDetail.setAccountNumber(row.accountNumber());
+        userDetail.setEmail(row.email());
+        userDetail.setFirstName(row.firstName());
+        userDetail.setLastName(row.lastName());
+        userDetail.setDateOfBirth(row.dateOfBirth());
+        userDetail.setRoles(roles);
+        userDetail.setUpdatedAt(row.updatedAt());
+        return userDetail;
     }
 }
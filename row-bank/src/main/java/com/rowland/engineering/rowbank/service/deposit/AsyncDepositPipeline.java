@@ -0,0 +1,230 @@
+package com.rowland.engineering.rowbank.service.deposit;
+
+import com.rowland.engineering.rowbank.dto.DepositStatus;
+import com.rowland.engineering.rowbank.exception.AppException;
+import com.rowland.engineering.rowbank.exception.TooManyRequestsException;
+import com.rowland.engineering.rowbank.exception.UserNotFoundException;
+import com.rowland.engineering.rowbank.repository.TransactionRepository;
+import com.rowland.engineering.rowbank.repository.UserRepository;
+import com.rowland.engineering.rowbank.service.ledger.LedgerEngine;
+import com.rowland.engineering.rowbank.utils.BoundedCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Accepts deposits without waiting for their commit. A deposit is journaled to
+ * local disk, placed on the ring of its account's partition and acknowledged with
+ * a tracking id. One consumer thread per partition hands deposits to the
+ * {@link LedgerEngine} in ring order, which keeps them in order per account, and
+ * the engine's writer commits them in batches. The tracking id is stored as the
+ * transaction reference, so deposits journaled before a crash are replayed at
+ * startup unless they already committed.
+ */
+@Service
+public class AsyncDepositPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncDepositPipeline.class);
+
+    // Replay waits this long between attempts while a partition's ring is full.
+    private static final long REPLAY_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int REPLAY_CHECK_CHUNK = 500;
+
+    private final LedgerEngine ledgerEngine;
+    private final TransactionRepository transactionRepository;
+    private final UserRepository userRepository;
+    private final DepositRing[] rings;
+    private final int batchSize;
+    private final Path journalDirectory;
+    private final long segmentBytes;
+    private final boolean fsync;
+    private final BoundedCache<String, Tracking> tracking;
+    private final Counter rejected;
+    private final List<Thread> consumers = new ArrayList<>();
+
+    private DepositJournal journal;
+    private volatile boolean running;
+
+    public AsyncDepositPipeline(LedgerEngine ledgerEngine,
+                                TransactionRepository transactionRepository,
+                                UserRepository userRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.deposits.async.partitions:4}") int partitions,
+                                @Value("${app.deposits.async.ring-capacity:4096}") int ringCapacity,
+                                @Value("${app.deposits.async.batch-size:256}") int batchSize,
+                                @Value("${app.deposits.async.journal-dir:deposit-journal}") String journalDirectory,
+                                @Value("${app.deposits.async.segment-bytes:67108864}") long segmentBytes,
+                                @Value("${app.deposits.async.fsync:true}") boolean fsync,
+                                @Value("${app.deposits.async.status.max-size:100000}") int statusMaxSize,
+                                @Value("${app.deposits.async.status.ttl-ms:3600000}") long statusTtlMs) {
+        this.ledgerEngine = ledgerEngine;
+        this.transactionRepository = transactionRepository;
+        this.userRepository = userRepository;
+        this.rings = new DepositRing[partitions];
+        for (int i = 0; i < partitions; i++) {
+            rings[i] = new DepositRing(ringCapacity);
+        }
+        this.batchSize = batchSize;
+        this.journalDirectory = Path.of(journalDirectory);
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+        this.tracking = new BoundedCache<>(statusMaxSize, statusTtlMs);
+        this.rejected = Counter.builder("deposits.async.rejected")
+                .description("Deposits refused with 429 because their partition was full")
+                .register(meterRegistry);
+        Gauge.builder("deposits.async.queued", rings, all -> Arrays.stream(all).mapToInt(DepositRing::size).sum())
+                .description("Deposits accepted but not yet handed to the ledger")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        running = true;
+        for (int i = 0; i < rings.length; i++) {
+            DepositRing ring = rings[i];
+            Thread consumer = new Thread(() -> consume(ring), "deposit-consumer-" + i);
+            consumer.start();
+            consumers.add(consumer);
+        }
+        List<DepositJournal.Recovered> recovered = new ArrayList<>();
+        journal = DepositJournal.open(journalDirectory, segmentBytes, fsync, recovered);
+        replay(recovered);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException, IOException {
+        running = false;
+        for (Thread consumer : consumers) {
+            LockSupport.unpark(consumer);
+            consumer.join();
+        }
+        journal.close();
+    }
+
+    /**
+     * Durably accepts a deposit and returns its tracking id, or refuses it with 429
+     * when the account's partition is full. Unknown accounts are refused before
+     * anything is journaled.
+     */
+    public String submit(Long userId, BigDecimal amount) {
+        LedgerEngine.validateAmount(amount);
+        if (!userRepository.existsById(userId)) {
+            throw new UserNotFoundException("User with id: " + userId + " not found");
+        }
+        DepositRing ring = ringFor(userId);
+        long sequence = ring.tryClaim();
+        if (sequence < 0) {
+            rejected.increment();
+            throw new TooManyRequestsException("Too many deposits in flight, retry shortly", 1);
+        }
+        DepositRing.Slot slot = ring.slot(sequence);
+        String trackingId = UUID.randomUUID().toString();
+        try {
+            slot.fill(userId, amount, trackingId, journal.append(trackingId, userId, amount));
+        } catch (IOException | RuntimeException ex) {
+            // The claimed slot must still be published or the consumer would stall on it.
+            slot.cancel();
+            ring.publish(sequence);
+            throw new AppException("Deposit could not be accepted", ex);
+        }
+        tracking.put(trackingId, new Tracking(userId, DepositStatus.State.ACCEPTED, null));
+        ring.publish(sequence);
+        return trackingId;
+    }
+
+    public Optional<DepositStatus> status(Long userId, String trackingId) {
+        Tracking tracked = tracking.get(trackingId);
+        if (tracked != null) {
+            return tracked.userId().equals(userId)
+                    ? Optional.of(new DepositStatus(trackingId, tracked.state(), tracked.message()))
+                    : Optional.empty();
+        }
+        return transactionRepository.existsByReferenceAndUserId(trackingId, userId)
+                ? Optional.of(new DepositStatus(trackingId, DepositStatus.State.COMPLETED, null))
+                : Optional.empty();
+    }
+
+    private DepositRing ringFor(Long accountId) {
+        return rings[Math.floorMod(accountId.hashCode(), rings.length)];
+    }
+
+    private void consume(DepositRing ring) {
+        while (running || ring.size() > 0) {
+            int drained = 0;
+            DepositRing.Slot slot;
+            while (drained < batchSize && (slot = ring.peek()) != null) {
+                if (!slot.cancelled) {
+                    apply(slot.accountId, slot.amount, slot.trackingId, slot.segment);
+                }
+                ring.release();
+                drained++;
+            }
+            if (drained == 0 && running) {
+                ring.awaitPublished();
+            }
+        }
+    }
+
+    private void apply(Long accountId, BigDecimal amount, String trackingId, DepositJournal.Segment segment) {
+        try {
+            ledgerEngine.deposit(accountId, amount, "Deposit", trackingId, null)
+                    .whenComplete((ignored, ex) -> finish(accountId, trackingId, segment, ex));
+        } catch (RuntimeException ex) {
+            finish(accountId, trackingId, segment, ex);
+        }
+    }
+
+    private void finish(Long accountId, String trackingId, DepositJournal.Segment segment, Throwable failure) {
+        if (failure == null) {
+            tracking.put(trackingId, new Tracking(accountId, DepositStatus.State.COMPLETED, null));
+        } else {
+            logger.warn("Async deposit {} for account {} failed", trackingId, accountId, failure);
+            tracking.put(trackingId, new Tracking(accountId, DepositStatus.State.FAILED, failure.getMessage()));
+        }
+        journal.release(segment);
+    }
+
+    // Re-submits journaled deposits whose reference never reached transactions_table.
+    private void replay(List<DepositJournal.Recovered> recovered) {
+        int replayed = 0;
+        for (int from = 0; from < recovered.size(); from += REPLAY_CHECK_CHUNK) {
+            List<DepositJournal.Recovered> chunk = recovered.subList(from, Math.min(from + REPLAY_CHECK_CHUNK, recovered.size()));
+            Set<String> committed = new HashSet<>(transactionRepository.findExistingReferences(
+                    chunk.stream().map(DepositJournal.Recovered::trackingId).toList()));
+            for (DepositJournal.Recovered deposit : chunk) {
+                if (committed.contains(deposit.trackingId())) {
+                    journal.release(deposit.segment());
+                    continue;
+                }
+                DepositRing ring = ringFor(deposit.accountId());
+                long sequence;
+                while ((sequence = ring.tryClaim()) < 0) {
+                    LockSupport.parkNanos(REPLAY_BACKOFF_NANOS);
+                }
+                ring.slot(sequence).fill(deposit.accountId(), deposit.amount(), deposit.trackingId(), deposit.segment());
+                tracking.put(deposit.trackingId(), new Tracking(deposit.accountId(), DepositStatus.State.ACCEPTED, null));
+                ring.publish(sequence);
+                replayed++;
+            }
+        }
+        if (!recovered.isEmpty()) {
+            logger.info("Deposit journal recovery: {} records found, {} replayed", recovered.size(), replayed);
+        }
+    }
+
+    private record Tracking(Long userId, DepositStatus.State state, String message) {
+    }
+}
@@ -0,0 +1,288 @@
+package com.rowland.engineering.rowbank.service.deposit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of accepted deposits, split into segment files. A deposit is
+ * acknowledged only after its record is forced to disk. Forces are grouped: the
+ * first waiter forces everything written so far and every caller covered by it
+ * returns without another fsync. A segment is deleted once it has been rolled
+ * over and every deposit recorded in it has been processed.
+ * <p>
+ * A failed force leaves it unknown what reached the disk, so the journal stops
+ * accepting deposits until it is reopened. Each record the force was meant to
+ * cover gets a cancellation line, so a refused deposit is not replayed on restart
+ * and then credited a second time when the client retries it.
+ */
+final class DepositJournal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DepositJournal.class);
+
+    private static final String PREFIX = "deposits-";
+    private static final String SUFFIX = ".log";
+    private static final String CANCELLED = "cancelled";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final Force force;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    private Segment active;
+    private long nextSegmentNumber;
+    private long written;
+    private volatile long durable;
+    private volatile IOException failure;
+
+    private DepositJournal(Path directory, long segmentBytes, Force force) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.force = force;
+    }
+
+    /**
+     * Opens the journal and returns it with the records left by the previous run.
+     * Their segments stay on disk until each recovered record is released.
+     */
+    static DepositJournal open(Path directory, long segmentBytes, boolean fsync,
+                               List<Recovered> recovered) throws IOException {
+        return open(directory, segmentBytes, fsync ? channel -> channel.force(false) : null, recovered);
+    }
+
+    // A null force acknowledges records once written, without waiting for the disk.
+    static DepositJournal open(Path directory, long segmentBytes, Force force,
+                               List<Recovered> recovered) throws IOException {
+        Files.createDirectories(directory);
+        DepositJournal journal = new DepositJournal(directory, segmentBytes, force);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(file -> file.getFileName().toString().startsWith(PREFIX))
+                    .sorted()
+                    .toList();
+        }
+        for (Path file : files) {
+            journal.nextSegmentNumber = Math.max(journal.nextSegmentNumber, segmentNumber(file) + 1);
+            Segment segment = new Segment(file, null);
+            segment.sealed = true;
+            List<String[]> records = readRecords(file);
+            segment.pending.set(records.size());
+            records.forEach(record -> recovered.add(new Recovered(record[0], Long.valueOf(record[1]),
+                    new BigDecimal(record[2]), segment)));
+            if (records.isEmpty()) {
+                segment.delete();
+            }
+        }
+        journal.active = journal.newSegment();
+        return journal;
+    }
+
+    Segment append(String trackingId, Long accountId, BigDecimal amount) throws IOException {
+        ByteBuffer record = ByteBuffer.wrap((trackingId + ',' + accountId + ',' + amount.toPlainString() + '\n')
+                .getBytes(StandardCharsets.US_ASCII));
+        Segment segment;
+        long position;
+        appendLock.lock();
+        try {
+            if (failure != null) {
+                throw failed();
+            }
+            if (active.size >= segmentBytes) {
+                roll();
+            }
+            segment = active;
+            segment.pending.incrementAndGet();
+            try {
+                while (record.hasRemaining()) {
+                    segment.size += segment.channel.write(record);
+                }
+            } catch (IOException ex) {
+                release(segment);
+                throw ex;
+            }
+            position = ++written;
+        } finally {
+            appendLock.unlock();
+        }
+        if (force != null) {
+            try {
+                awaitDurable(position);
+            } catch (IOException ex) {
+                cancel(trackingId, segment);
+                throw ex;
+            }
+        }
+        return segment;
+    }
+
+    /**
+     * Marks one record of the segment as processed.
+     */
+    void release(Segment segment) {
+        if (segment.pending.decrementAndGet() == 0 && segment.sealed) {
+            segment.delete();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            if (failure == null) {
+                active.channel.force(false);
+            }
+            active.channel.close();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void awaitDurable(long position) throws IOException {
+        if (durable >= position) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (durable >= position) {
+                return;
+            }
+            if (failure != null) {
+                throw failed();
+            }
+            long target;
+            FileChannel channel;
+            appendLock.lock();
+            try {
+                target = written;
+                channel = active.channel;
+            } finally {
+                appendLock.unlock();
+            }
+            try {
+                force.force(channel);
+            } catch (IOException ex) {
+                failure = ex;
+                logger.error("Deposit journal could not force its writes; refusing deposits until it is reopened", ex);
+                throw ex;
+            }
+            durable = target;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private IOException failed() {
+        return new IOException("Deposit journal failed to force its writes and must be reopened", failure);
+    }
+
+    // Best effort: if the cancellation cannot be written either, the deposit may be replayed.
+    private void cancel(String trackingId, Segment segment) {
+        ByteBuffer record = ByteBuffer.wrap((trackingId + ',' + CANCELLED + '\n').getBytes(StandardCharsets.US_ASCII));
+        appendLock.lock();
+        try {
+            while (record.hasRemaining()) {
+                segment.size += segment.channel.write(record);
+            }
+            segment.channel.force(false);
+        } catch (IOException ex) {
+            logger.error("Could not cancel deposit {} in the journal; it may be replayed on restart", trackingId, ex);
+        } finally {
+            appendLock.unlock();
+            release(segment);
+        }
+    }
+
+    // Caller holds the append lock. Everything in the old segment is forced first.
+    private void roll() throws IOException {
+        Segment old = active;
+        old.channel.force(false);
+        active = newSegment();
+        old.sealed = true;
+        if (old.pending.get() == 0) {
+            old.delete();
+        }
+    }
+
+    private Segment newSegment() throws IOException {
+        Path file = directory.resolve(String.format("%s%019d%s", PREFIX, nextSegmentNumber++, SUFFIX));
+        return new Segment(file, FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+    }
+
+    // Only complete lines are records; a torn final line was never acknowledged.
+    // A cancellation line removes the record with its tracking id.
+    private static List<String[]> readRecords(Path file) throws IOException {
+        String content = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII);
+        List<String[]> records = new ArrayList<>();
+        int start = 0;
+        for (int end = content.indexOf('\n'); end >= 0; end = content.indexOf('\n', start)) {
+            String[] fields = content.substring(start, end).split(",");
+            if (fields.length == 3) {
+                records.add(fields);
+            } else if (fields.length == 2 && CANCELLED.equals(fields[1])) {
+                records.removeIf(record -> record[0].equals(fields[0]));
+            } else {
+                logger.warn("Skipping malformed deposit journal record in {}", file);
+            }
+            start = end + 1;
+        }
+        return records;
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    static final class Segment {
+        private final Path file;
+        private final FileChannel channel;
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean deleted = new AtomicBoolean();
+        private volatile boolean sealed;
+        private long size;
+
+        private Segment(Path file, FileChannel channel) {
+            this.file = file;
+            this.channel = channel;
+        }
+
+        private void delete() {
+            if (!deleted.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                logger.warn("Could not delete processed deposit journal segment {}", file, ex);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface Force {
+        void force(FileChannel channel) throws IOException;
+    }
+
+    record Recovered(String trackingId, Long accountId, BigDecimal amount, Segment segment) {
+    }
+}
@@ -0,0 +1,123 @@
+package com.rowland.engineering.rowbank.service.deposit;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded multi-producer, single-consumer ring of pre-allocated slots. Producers
+ * claim a sequence with a CAS, fill the slot and publish it; the consumer reads
+ * slots strictly in sequence order, so deposits for an account leave the ring in
+ * the order they were accepted. An idle consumer parks until a producer publishes.
+ */
+final class DepositRing {
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+
+    // Next sequence to consume. Written only by the consumer thread.
+    private volatile long head;
+
+    private volatile Thread consumer;
+    private volatile boolean consumerParked;
+
+    DepositRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Claims the next free sequence, or returns -1 when the ring is full.
+     */
+    long tryClaim() {
+        while (true) {
+            long claimed = tail.get();
+            if (claimed - head >= slots.length) {
+                return -1;
+            }
+            if (tail.compareAndSet(claimed, claimed + 1)) {
+                return claimed;
+            }
+        }
+    }
+
+    Slot slot(long sequence) {
+        return slots[(int) (sequence & mask)];
+    }
+
+    void publish(long sequence) {
+        slot(sequence).published = sequence;
+        // Pairs with awaitPublished: either the consumer sees this slot before it
+        // parks, or this sees it parked and wakes it.
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Parks the calling consumer until a slot may have been published. Returns
+     * early on {@link LockSupport#unpark} or spuriously, so callers re-check.
+     */
+    void awaitPublished() {
+        consumer = Thread.currentThread();
+        consumerParked = true;
+        if (peek() == null) {
+            LockSupport.park(this);
+        }
+        consumerParked = false;
+    }
+
+    /**
+     * Returns the next published slot, or null if the producer holding it has not
+     * published yet. The consumer must call {@link #release()} once done with it.
+     */
+    Slot peek() {
+        long next = head;
+        Slot slot = slot(next);
+        return slot.published == next ? slot : null;
+    }
+
+    void release() {
+        slot(head).clear();
+        head = head + 1;
+    }
+
+    int size() {
+        return (int) (tail.get() - head);
+    }
+
+    static final class Slot {
+        Long accountId;
+        BigDecimal amount;
+        String trackingId;
+        DepositJournal.Segment segment;
+        boolean cancelled;
+
+        // The sequence this slot was last published for; the volatile write orders the fields above.
+        private volatile long published = -1;
+
+        void fill(Long accountId, BigDecimal amount, String trackingId, DepositJournal.Segment segment) {
+            this.accountId = accountId;
+            this.amount = amount;
+            this.trackingId = trackingId;
+            this.segment = segment;
+            this.cancelled = false;
+        }
+
+        void cancel() {
+            this.cancelled = true;
+        }
+
+        private void clear() {
+            accountId = null;
+            amount = null;
+            trackingId = null;
+            segment = null;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.rowland.engineering.rowbank.service.eod;
+
+import com.rowland.engineering.rowbank.dto.EndOfDayStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Progress and throughput of the current or last end-of-day run at
+ * {@code /actuator/endofday}. Read-only: runs are started through the admin API.
+ */
+@Component
+@Endpoint(id = "endofday")
+@RequiredArgsConstructor
+public class EndOfDayEndpoint {
+    private final EndOfDayJob endOfDayJob;
+
+    @ReadOperation
+    public EndOfDayStatus status() {
+        return endOfDayJob.status();
+    }
+}
@@ -0,0 +1,386 @@
+package com.rowland.engineering.rowbank.service.eod;
+
+import com.rowland.engineering.rowbank.dto.EndOfDayStatus;
+import com.rowland.engineering.rowbank.exception.BadRequestException;
+import com.rowland.engineering.rowbank.model.EndOfDayChunk;
+import com.rowland.engineering.rowbank.model.EndOfDayRun;
+import com.rowland.engineering.rowbank.model.LedgerMode;
+import com.rowland.engineering.rowbank.model.TransactionType;
+import com.rowland.engineering.rowbank.repository.EndOfDayChunkRepository;
+import com.rowland.engineering.rowbank.repository.EndOfDayRunRepository;
+import com.rowland.engineering.rowbank.repository.TransactionRepository;
+import com.rowland.engineering.rowbank.repository.UserRepository;
+import com.rowland.engineering.rowbank.service.ledger.AccountAmount;
+import com.rowland.engineering.rowbank.service.ledger.LedgerEngine;
+import com.rowland.engineering.rowbank.service.ledger.LedgerEntry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Nightly interest accrual and maintenance fees. The account id space is cut into
+ * fixed, aligned ranges of {@code app.eod.chunk-size} ids, which a pool of workers
+ * processes in parallel. Each range's balances are read in one query and posted
+ * through the {@link LedgerEngine}, whose writer group-commits them, so in-memory
+ * balances stay correct while customers keep transacting. Interest is earned on the
+ * balance at the close of the business date, whenever the run happens.
+ * <p>
+ * A range gets a checkpoint row once all its postings have committed, and every
+ * account's postings carry a reference derived from the business date and account
+ * id. A resumed run skips checkpointed ranges, and within a range it skips accounts
+ * whose reference already exists, so nothing is posted twice. Like the ledger
+ * engine, this assumes a single application instance.
+ */
+@Service
+public class EndOfDayJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(EndOfDayJob.class);
+
+    private final LedgerEngine ledgerEngine;
+    private final UserRepository userRepository;
+    private final TransactionRepository transactionRepository;
+    private final EndOfDayRunRepository endOfDayRunRepository;
+    private final EndOfDayChunkRepository endOfDayChunkRepository;
+    private final BigDecimal annualInterestRate;
+    private final BigDecimal maintenanceFee;
+    private final int feeDayOfMonth;
+    private final long chunkSize;
+    private final ExecutorService workers;
+    private final ExecutorService coordinator;
+    private final AtomicReference<Progress> current = new AtomicReference<>();
+    private final MeterRegistry meterRegistry;
+    private final Counter accountsPosted;
+    private final Counter accountsSkipped;
+
+    public EndOfDayJob(LedgerEngine ledgerEngine,
+                       UserRepository userRepository,
+                       TransactionRepository transactionRepository,
+                       EndOfDayRunRepository endOfDayRunRepository,
+                       EndOfDayChunkRepository endOfDayChunkRepository,
+                       MeterRegistry meterRegistry,
+                       @Value("${app.eod.annual-interest-rate:0.02}") BigDecimal annualInterestRate,
+                       @Value("${app.eod.maintenance-fee:5.00}") BigDecimal maintenanceFee,
+                       @Value("${app.eod.fee-day-of-month:1}") int feeDayOfMonth,
+                       @Value("${app.eod.chunk-size:1000}") long chunkSize,
+                       @Value("${app.eod.threads:4}") int threads) {
+        this.ledgerEngine = ledgerEngine;
+        this.userRepository = userRepository;
+        this.transactionRepository = transactionRepository;
+        this.endOfDayRunRepository = endOfDayRunRepository;
+        this.endOfDayChunkRepository = endOfDayChunkRepository;
+        this.meterRegistry = meterRegistry;
+        this.annualInterestRate = annualInterestRate;
+        this.maintenanceFee = maintenanceFee;
+        this.feeDayOfMonth = feeDayOfMonth;
+        this.chunkSize = chunkSize;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "eod-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.coordinator = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "eod-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.accountsPosted = Counter.builder("eod.accounts.posted")
+                .description("Accounts that received end-of-day interest or fees")
+                .register(meterRegistry);
+        this.accountsSkipped = Counter.builder("eod.accounts.skipped")
+                .description("Accounts already posted by an earlier attempt of the same run")
+                .register(meterRegistry);
+        Gauge.builder("eod.chunks.remaining", current, reference -> {
+                    Progress progress = reference.get();
+                    return progress == null || progress.state != EndOfDayStatus.State.RUNNING ? 0 : progress.remaining();
+                })
+                .description("Account ranges the running end-of-day job has still to process")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    @Scheduled(cron = "${app.eod.cron:0 15 0 * * *}")
+    public void runForPreviousDay() {
+        try {
+            start(LocalDate.now().minusDays(1));
+        } catch (BadRequestException ex) {
+            logger.warn("Scheduled end-of-day run not started: {}", ex.getMessage());
+        }
+    }
+
+    // Picks up runs a crash or shutdown left unfinished.
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterrupted() {
+        for (EndOfDayRun run : endOfDayRunRepository.findByStatusOrderByBusinessDate(EndOfDayRun.Status.RUNNING)) {
+            logger.info("Resuming interrupted end-of-day run for {}", run.getBusinessDate());
+            coordinator.execute(() -> {
+                try {
+                    run(run.getBusinessDate());
+                } catch (BadRequestException ex) {
+                    logger.warn("End-of-day run for {} not resumed: {}", run.getBusinessDate(), ex.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Starts the run for {@code businessDate} in the background and returns at once.
+     */
+    public EndOfDayStatus start(LocalDate businessDate) {
+        Progress progress = claim(businessDate);
+        try {
+            coordinator.execute(() -> execute(progress));
+        } catch (RejectedExecutionException ex) {
+            progress.finish(EndOfDayStatus.State.FAILED);
+            throw ex;
+        }
+        return progress.toStatus();
+    }
+
+    /**
+     * Runs, or resumes, the run for {@code businessDate} on the calling thread. A run
+     * that has already completed is not repeated.
+     */
+    public EndOfDayStatus run(LocalDate businessDate) {
+        return execute(claim(businessDate));
+    }
+
+    public EndOfDayStatus status() {
+        Progress progress = current.get();
+        return progress != null ? progress.toStatus()
+                : new EndOfDayStatus(null, EndOfDayStatus.State.IDLE, 0, 0, 0, 0, 0, null, null, 0);
+    }
+
+    private Progress claim(LocalDate businessDate) {
+        if (!businessDate.isBefore(LocalDate.now())) {
+            throw new BadRequestException("Business date must be before today");
+        }
+        Progress previous = current.get();
+        Progress progress = new Progress(businessDate);
+        if ((previous != null && previous.state == EndOfDayStatus.State.RUNNING)
+                || !current.compareAndSet(previous, progress)) {
+            throw new BadRequestException("An end-of-day run is already in progress");
+        }
+        return progress;
+    }
+
+    private EndOfDayStatus execute(Progress progress) {
+        LocalDate businessDate = progress.businessDate;
+        try {
+            EndOfDayRun run = endOfDayRunRepository.findById(businessDate).orElse(null);
+            if (run != null && run.getStatus() == EndOfDayRun.Status.COMPLETED) {
+                logger.info("End-of-day run for {} already completed", businessDate);
+                progress.finish(EndOfDayStatus.State.COMPLETED);
+                return progress.toStatus();
+            }
+            if (run == null) {
+                run = endOfDayRunRepository.save(new EndOfDayRun(businessDate, EndOfDayRun.Status.RUNNING,
+                        Instant.now(), null, null));
+            }
+
+            Optional<Long> minId = userRepository.findMinId();
+            Optional<Long> maxId = userRepository.findMaxId();
+            Set<Long> checkpointed = new HashSet<>(endOfDayChunkRepository.findCompletedChunkStarts(businessDate));
+            List<CompletableFuture<Void>> chunks = new ArrayList<>();
+            if (minId.isPresent() && maxId.isPresent()) {
+                // Aligned to multiples of the chunk size so ranges match their checkpoints across restarts.
+                for (long first = Math.floorDiv(minId.get(), chunkSize) * chunkSize; first <= maxId.get(); first += chunkSize) {
+                    progress.chunks++;
+                    if (checkpointed.contains(first)) {
+                        progress.completed.incrementAndGet();
+                        continue;
+                    }
+                    long from = first;
+                    chunks.add(CompletableFuture.runAsync(() -> processChunk(progress, from, from + chunkSize), workers));
+                }
+            }
+            CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new)).join();
+
+            if (progress.failed.get() > 0) {
+                logger.error("End-of-day run for {} finished with {} failed account ranges; run it again to retry them",
+                        businessDate, progress.failed.get());
+                progress.finish(EndOfDayStatus.State.FAILED);
+                return progress.toStatus();
+            }
+            run.setStatus(EndOfDayRun.Status.COMPLETED);
+            run.setCompletedAt(Instant.now());
+            run.setAccountsPosted(endOfDayChunkRepository.sumAccountsPosted(businessDate));
+            endOfDayRunRepository.save(run);
+            progress.finish(EndOfDayStatus.State.COMPLETED);
+            EndOfDayStatus status = progress.toStatus();
+            logger.info("End-of-day run for {} completed: {} accounts posted, {} skipped, {} accounts/s",
+                    businessDate, status.accountsPosted(), status.accountsSkipped(), Math.round(status.accountsPerSecond()));
+            return status;
+        } catch (RuntimeException ex) {
+            logger.error("End-of-day run for {} failed", businessDate, ex);
+            progress.finish(EndOfDayStatus.State.FAILED);
+            return progress.toStatus();
+        }
+    }
+
+    private void processChunk(Progress progress, long fromId, long toId) {
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            LocalDate businessDate = progress.businessDate;
+            // Transactions are stamped in local time; an account opened after the day closed earns nothing for it.
+            LocalDateTime cutoff = businessDate.plusDays(1).atStartOfDay();
+            Instant openedBefore = cutoff.atZone(ZoneId.systemDefault()).toInstant();
+            List<AccountAmount> balances = userRepository.findBalancesInRange(fromId, toId, openedBefore);
+            Map<Long, String> references = new HashMap<>();
+            for (AccountAmount balance : balances) {
+                references.put(balance.userId(), reference(businessDate, balance.userId()));
+            }
+            Set<String> alreadyPosted = references.isEmpty() ? Set.of()
+                    : new HashSet<>(transactionRepository.findExistingReferences(references.values()));
+            // Balances on users_table are only current in mutable mode; otherwise the engine derives them.
+            boolean seedBalances = ledgerEngine.getMode() == LedgerMode.MUTABLE;
+            Map<Long, BigDecimal> closingBalances = new HashMap<>();
+            for (AccountAmount closing : userRepository.findClosingBalancesInRange(fromId, toId, cutoff,
+                    openedBefore, !seedBalances)) {
+                closingBalances.put(closing.userId(), closing.amount());
+            }
+            LocalDateTime postedAt = LocalDateTime.now();
+
+            AtomicInteger posted = new AtomicInteger();
+            int skipped = 0;
+            List<CompletableFuture<Void>> commits = new ArrayList<>(balances.size());
+            for (AccountAmount balance : balances) {
+                Long accountId = balance.userId();
+                String reference = references.get(accountId);
+                if (alreadyPosted.contains(reference)) {
+                    skipped++;
+                    continue;
+                }
+                BigDecimal closingBalance = closingBalances.getOrDefault(accountId, BigDecimal.ZERO);
+                commits.add(ledgerEngine.post(accountId, seedBalances ? balance.amount() : null, currentBalance -> {
+                    List<LedgerEntry> entries = postings(accountId, closingBalance, currentBalance, businessDate,
+                            reference, postedAt);
+                    if (!entries.isEmpty()) {
+                        posted.incrementAndGet();
+                    }
+                    return entries;
+                }));
+            }
+            CompletableFuture.allOf(commits.toArray(CompletableFuture[]::new)).join();
+
+            endOfDayChunkRepository.save(EndOfDayChunk.builder()
+                    .businessDate(businessDate)
+                    .firstAccountId(fromId)
+                    .endAccountId(toId)
+                    .accountsPosted(posted.get())
+                    .completedAt(Instant.now())
+                    .build());
+            progress.posted.add(posted.get());
+            progress.skipped.add(skipped);
+            progress.completed.incrementAndGet();
+            accountsPosted.increment(posted.get());
+            accountsSkipped.increment(skipped);
+        } catch (RuntimeException ex) {
+            outcome = "failure";
+            progress.failed.incrementAndGet();
+            logger.error("End-of-day postings for accounts [{}, {}) failed", fromId, toId, ex);
+        } finally {
+            Timer.builder("eod.chunk.duration")
+                    .description("Time to post one range of accounts")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * A day's interest at the annual rate on a positive closing balance, rounded to
+     * the cent, and on the fee day the maintenance fee, capped at the current balance
+     * so it never overdraws.
+     */
+    List<LedgerEntry> postings(Long accountId, BigDecimal closingBalance, BigDecimal currentBalance,
+                               LocalDate businessDate, String reference, LocalDateTime postedAt) {
+        List<LedgerEntry> entries = new ArrayList<>(2);
+        BigDecimal interest = BigDecimal.ZERO;
+        if (closingBalance.signum() > 0) {
+            interest = closingBalance.multiply(annualInterestRate)
+                    .divide(BigDecimal.valueOf(businessDate.lengthOfYear()), 2, RoundingMode.HALF_EVEN);
+        }
+        if (interest.signum() > 0) {
+            entries.add(new LedgerEntry(accountId, TransactionType.CREDIT, interest,
+                    "Interest for " + businessDate, reference, postedAt));
+        }
+        if (businessDate.getDayOfMonth() == Math.min(feeDayOfMonth, businessDate.lengthOfMonth())) {
+            BigDecimal fee = maintenanceFee.min(currentBalance.add(interest));
+            if (fee.signum() > 0) {
+                entries.add(new LedgerEntry(accountId, TransactionType.DEBIT, fee,
+                        "Maintenance fee for " + YearMonth.from(businessDate), reference, postedAt));
+            }
+        }
+        return entries;
+    }
+
+    static String reference(LocalDate businessDate, Long accountId) {
+        return "EOD-" + businessDate.format(DateTimeFormatter.BASIC_ISO_DATE) + "-" + accountId;
+    }
+
+    private static final class Progress {
+        private final LocalDate businessDate;
+        private final Instant startedAt = Instant.now();
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final LongAdder posted = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private volatile int chunks;
+        private volatile EndOfDayStatus.State state = EndOfDayStatus.State.RUNNING;
+        private volatile Instant finishedAt;
+
+        private Progress(LocalDate businessDate) {
+            this.businessDate = businessDate;
+        }
+
+        private int remaining() {
+            return chunks - completed.get() - failed.get();
+        }
+
+        private void finish(EndOfDayStatus.State outcome) {
+            finishedAt = Instant.now();
+            state = outcome;
+        }
+
+        private EndOfDayStatus toStatus() {
+            Instant end = finishedAt != null ? finishedAt : Instant.now();
+            long elapsedMs = Math.max(1, Duration.between(startedAt, end).toMillis());
+            return new EndOfDayStatus(businessDate, state, chunks, completed.get(), failed.get(),
+                    posted.sum(), skipped.sum(), startedAt, finishedAt, posted.sum() * 1000.0 / elapsedMs);
+        }
+    }
+}
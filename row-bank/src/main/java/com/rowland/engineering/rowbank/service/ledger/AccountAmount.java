@@ -0,0 +1,6 @@
+package com.rowland.engineering.rowbank.service.ledger;
+
+import java.math.BigDecimal;
+
+public record AccountAmount(Long userId, BigDecimal amount) {
+}
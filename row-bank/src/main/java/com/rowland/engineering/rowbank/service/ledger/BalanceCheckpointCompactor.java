@@ -0,0 +1,68 @@
+package com.rowland.engineering.rowbank.service.ledger;
+
+import com.rowland.engineering.rowbank.model.LedgerMode;
+import com.rowland.engineering.rowbank.repository.BalanceCheckpointRepository;
+import com.rowland.engineering.rowbank.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Moves balance checkpoints forward in append-only mode so that a balance read only
+ * sums the transactions since the last compaction. Transactions younger than the
+ * settle lag are left alone because a ledger batch timestamped earlier could still
+ * be committing; folding past it would lose that batch from every later read.
+ * Work is done in time slices, one transaction each, to keep lock times short.
+ */
+@Service
+public class BalanceCheckpointCompactor {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceCheckpointCompactor.class);
+
+    private final LedgerWriter ledgerWriter;
+    private final TransactionRepository transactionRepository;
+    private final BalanceCheckpointRepository balanceCheckpointRepository;
+    private final Duration settleLag;
+    private final Duration slice;
+
+    public BalanceCheckpointCompactor(LedgerWriter ledgerWriter,
+                                      TransactionRepository transactionRepository,
+                                      BalanceCheckpointRepository balanceCheckpointRepository,
+                                      @Value("${app.ledger.checkpoint.settle-lag-ms:60000}") long settleLagMs,
+                                      @Value("${app.ledger.checkpoint.slice-minutes:60}") long sliceMinutes) {
+        this.ledgerWriter = ledgerWriter;
+        this.transactionRepository = transactionRepository;
+        this.balanceCheckpointRepository = balanceCheckpointRepository;
+        this.settleLag = Duration.ofMillis(settleLagMs);
+        this.slice = Duration.ofMinutes(sliceMinutes);
+    }
+
+    @Scheduled(fixedDelayString = "${app.ledger.checkpoint.interval-ms:300000}",
+            initialDelayString = "${app.ledger.checkpoint.interval-ms:300000}")
+    public void compact() {
+        if (ledgerWriter.getMode() != LedgerMode.APPEND_ONLY) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minus(settleLag);
+        Optional<LocalDateTime> start = balanceCheckpointRepository.findLatestCoveredUntil()
+                .or(transactionRepository::findEarliestTimestamp);
+        if (start.isEmpty()) {
+            return;
+        }
+        int folded = 0;
+        for (LocalDateTime from = start.get(); from.isBefore(cutoff); ) {
+            LocalDateTime to = from.plus(slice).isBefore(cutoff) ? from.plus(slice) : cutoff;
+            folded += ledgerWriter.checkpoint(from, to);
+            from = to;
+        }
+        if (folded > 0) {
+            logger.info("Compacted {} balance checkpoints up to {}", folded, cutoff);
+        }
+    }
+}
@@ -0,0 +1,479 @@
+package com.rowland.engineering.rowbank.service.ledger;
+
+import com.rowland.engineering.rowbank.exception.AppException;
+import com.rowland.engineering.rowbank.exception.BadRequestException;
+import com.rowland.engineering.rowbank.model.IdempotencyRecord;
+import com.rowland.engineering.rowbank.model.LedgerMode;
+import com.rowland.engineering.rowbank.model.TransactionType;
+import com.rowland.engineering.rowbank.utils.BoundedCache;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps hot account balances in memory and serialises changes per account with
+ * striped locks. Accepted operations are handed to a single writer thread which
+ * gathers them for up to {@code app.ledger.batch-window-ms} or
+ * {@code app.ledger.max-batch-size} operations and persists each batch in one
+ * database transaction (group commit).
+ * Callers get a future that completes only once their operation is committed, so
+ * an acknowledged deposit or transfer is never lost.
+ * <p>
+ * A transfer holds the two account stripes only while checking funds and moving
+ * the in-memory balances. Stripes are always taken in ascending index order, and
+ * the writer updates balance rows in ascending account id order, so opposite
+ * transfers between the same accounts cannot deadlock at either level. A hot
+ * account therefore costs one short critical section per transfer instead of a
+ * database row lock held for a whole transaction.
+ * <p>
+ * An account's in-memory balance is pinned only while it has operations in flight.
+ * Once they have all committed it moves to a bounded cache of settled balances
+ * that expire after {@code app.ledger.settled-ttl-ms}, so idle accounts fall back
+ * to the stored balance. Code that changes a balance outside the engine calls
+ * {@link #invalidate(Long)}.
+ */
+@Service
+public class LedgerEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(LedgerEngine.class);
+
+    public static final BigDecimal MINIMUM_AMOUNT = BigDecimal.valueOf(50);
+
+    private final LedgerWriter ledgerWriter;
+    private final ReentrantLock[] stripes;
+    private final ConcurrentHashMap<Long, AccountSlot> accounts = new ConcurrentHashMap<>();
+    private final BoundedCache<Long, BigDecimal> settled;
+    private final BlockingQueue<LedgerOperation> pending = new LinkedBlockingQueue<>();
+    private final Semaphore queueSpace;
+    private final int maxBatchSize;
+    private final long batchWindowNanos;
+    private final DistributionSummary batchSizes;
+    private final Timer commitWait;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public LedgerEngine(LedgerWriter ledgerWriter,
+                        @Value("${app.ledger.stripes:64}") int stripes,
+                        @Value("${app.ledger.queue-capacity:65536}") int queueCapacity,
+                        @Value("${app.ledger.max-batch-size:512}") int maxBatchSize,
+                        @Value("${app.ledger.batch-window-ms:2}") long batchWindowMs,
+                        @Value("${app.ledger.settled-cache-size:10000}") int settledCacheSize,
+                        @Value("${app.ledger.settled-ttl-ms:30000}") long settledTtlMs,
+                        MeterRegistry meterRegistry) {
+        this.ledgerWriter = ledgerWriter;
+        this.stripes = new ReentrantLock[Integer.highestOneBit(Math.max(1, stripes - 1)) << 1];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.queueSpace = new Semaphore(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(batchWindowMs);
+        this.settled = new BoundedCache<>(settledCacheSize, settledTtlMs);
+        this.settled.bindTo(meterRegistry, "ledger.settled.balances");
+        this.batchSizes = DistributionSummary.builder("ledger.batch.size")
+                .description("Operations committed per ledger transaction")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.commitWait = Timer.builder("ledger.commit.wait")
+                .description("Time from accepting an operation to its commit")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("ledger.queue.depth", pending, BlockingQueue::size).register(meterRegistry);
+        Gauge.builder("ledger.accounts.in.flight", accounts, Map::size)
+                .description("Accounts with uncommitted operations held in memory")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        ledgerWriter.applyModeChange();
+        running = true;
+        writerThread = new Thread(this::runWriter, "ledger-writer");
+        writerThread.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        writerThread.join();
+        // The writer drains the queue before it exits; anything enqueued after its
+        // last pass would otherwise wait forever.
+        List<LedgerOperation> stranded = new ArrayList<>();
+        pending.drainTo(stranded);
+        queueSpace.release(stranded.size());
+        AppException stopped = new AppException("Ledger engine stopped before the operation was written");
+        stranded.forEach(operation -> settle(operation, stopped));
+    }
+
+    public CompletableFuture<Void> deposit(Long accountId, BigDecimal amount, String description) {
+        return deposit(accountId, amount, description, null, null);
+    }
+
+    /**
+     * Deposits with an optional reference stored on the transaction row and, when
+     * given, stores the idempotency record in the same database transaction as the
+     * credit.
+     */
+    public CompletableFuture<Void> deposit(Long accountId, BigDecimal amount, String description,
+                                           String reference, IdempotencyRecord idempotencyRecord) {
+        validateAmount(amount);
+        reserveQueueSpace();
+        boolean accepted = false;
+        ReentrantLock lock = stripeFor(accountId);
+        lock.lock();
+        try {
+            AccountSlot slot = slotFor(accountId, null);
+            LedgerOperation operation = new LedgerOperation(List.of(new LedgerEntry(accountId,
+                    TransactionType.CREDIT, amount, description, reference, LocalDateTime.now())), idempotencyRecord);
+            CompletableFuture<Void> completion = accept(operation, slot);
+            accepted = true;
+            return completion;
+        } finally {
+            lock.unlock();
+            if (!accepted) {
+                queueSpace.release();
+            }
+        }
+    }
+
+    /**
+     * Moves {@code amount} from one account to another. The paired DEBIT and CREDIT
+     * share a reference and are always committed in the same database transaction.
+     * The returned future completes with that reference.
+     */
+    public CompletableFuture<String> transfer(Long fromAccountId, Long toAccountId, BigDecimal amount,
+                                              String description) {
+        validateAmount(amount);
+        if (Objects.equals(fromAccountId, toAccountId)) {
+            throw new BadRequestException("Cannot transfer to the same account");
+        }
+        ReentrantLock first = stripeFor(fromAccountId);
+        ReentrantLock second = stripeFor(toAccountId);
+        if (stripeIndex(toAccountId) < stripeIndex(fromAccountId)) {
+            first = second;
+            second = stripeFor(fromAccountId);
+        }
+        reserveQueueSpace();
+        boolean accepted = false;
+        first.lock();
+        try {
+            if (second != first) {
+                second.lock();
+            }
+            try {
+                AccountSlot source = slotFor(fromAccountId, null);
+                AccountSlot target = slotFor(toAccountId, null);
+                if (source.balance.compareTo(amount) < 0) {
+                    throw new BadRequestException("Insufficient funds");
+                }
+                String reference = UUID.randomUUID().toString();
+                LocalDateTime now = LocalDateTime.now();
+                LedgerOperation operation = new LedgerOperation(List.of(
+                        new LedgerEntry(fromAccountId, TransactionType.DEBIT, amount, description, reference, now),
+                        new LedgerEntry(toAccountId, TransactionType.CREDIT, amount, description, reference, now)),
+                        null);
+                CompletableFuture<Void> completion = accept(operation, source, target);
+                accepted = true;
+                return completion.thenApply(ignored -> reference);
+            } finally {
+                if (second != first) {
+                    second.unlock();
+                }
+            }
+        } finally {
+            first.unlock();
+            if (!accepted) {
+                queueSpace.release();
+            }
+        }
+    }
+
+    /**
+     * Posts the entries {@code postings} derives from the account's current balance
+     * as one operation, for system postings such as interest and fees, which are not
+     * subject to the deposit minimum. {@code storedBalance} seeds an account the
+     * engine does not hold, saving a lookup; pass null to have it read. Every entry
+     * must be for {@code accountId}.
+     */
+    public CompletableFuture<Void> post(Long accountId, BigDecimal storedBalance,
+                                        Function<BigDecimal, List<LedgerEntry>> postings) {
+        reserveQueueSpace();
+        boolean accepted = false;
+        ReentrantLock lock = stripeFor(accountId);
+        lock.lock();
+        try {
+            AccountSlot slot = slotFor(accountId, storedBalance);
+            List<LedgerEntry> entries = postings.apply(slot.balance);
+            if (entries.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            BigDecimal balance = slot.balance;
+            for (LedgerEntry entry : entries) {
+                balance = balance.add(entry.signedAmount());
+            }
+            if (balance.signum() < 0) {
+                throw new BadRequestException("Insufficient funds");
+            }
+            CompletableFuture<Void> completion = accept(new LedgerOperation(entries, null), slot);
+            accepted = true;
+            return completion;
+        } finally {
+            lock.unlock();
+            if (!accepted) {
+                queueSpace.release();
+            }
+        }
+    }
+
+    public LedgerMode getMode() {
+        return ledgerWriter.getMode();
+    }
+
+    public BigDecimal balanceOf(Long accountId) {
+        ReentrantLock lock = stripeFor(accountId);
+        lock.lock();
+        try {
+            AccountSlot slot = accounts.get(accountId);
+            if (slot != null) {
+                return slot.balance;
+            }
+            BigDecimal balance = settled.get(accountId);
+            if (balance == null) {
+                balance = ledgerWriter.loadBalance(accountId);
+                settled.put(accountId, balance);
+            }
+            return balance;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the engine's figure for an account whose stored balance was changed
+     * outside it, so the next operation reads the stored balance. An account with
+     * operations still in flight keeps its figure until they have committed.
+     */
+    public void invalidate(Long accountId) {
+        ReentrantLock lock = stripeFor(accountId);
+        lock.lock();
+        try {
+            settled.invalidate(accountId);
+            AccountSlot slot = accounts.get(accountId);
+            if (slot != null) {
+                slot.stale = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new AppException("Ledger write failed", ex.getCause());
+        }
+    }
+
+    public static void validateAmount(BigDecimal amount) {
+        if (amount == null || amount.compareTo(MINIMUM_AMOUNT) < 0) {
+            throw new BadRequestException("Amount must be at least " + MINIMUM_AMOUNT);
+        }
+    }
+
+    private ReentrantLock stripeFor(Long accountId) {
+        return stripes[stripeIndex(accountId)];
+    }
+
+    private int stripeIndex(Long accountId) {
+        int hash = accountId.hashCode();
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+
+    // Caller must hold the account's stripe lock. A slot only joins the in-flight
+    // map once an operation is accepted on it.
+    private AccountSlot slotFor(Long accountId, BigDecimal storedBalance) {
+        AccountSlot slot = accounts.get(accountId);
+        if (slot != null) {
+            return slot;
+        }
+        BigDecimal balance = settled.get(accountId);
+        if (balance == null) {
+            balance = storedBalance != null ? storedBalance : ledgerWriter.loadBalance(accountId);
+        }
+        return new AccountSlot(accountId, balance);
+    }
+
+    // Queue space is reserved before any stripe lock is taken, so a full queue holds
+    // callers back without them blocking the writer, which takes stripe locks to
+    // settle each operation. A reservation travels with the operation and is given
+    // back by whoever takes it off the queue.
+    private void reserveQueueSpace() {
+        try {
+            queueSpace.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new AppException("Interrupted while queueing ledger entry", ex);
+        }
+    }
+
+    // Caller must hold the stripe locks of the given slots, which must cover every
+    // entry of the operation, and a queue space reservation.
+    private CompletableFuture<Void> accept(LedgerOperation operation, AccountSlot... slots) {
+        if (!running) {
+            throw new AppException("Ledger engine is stopped");
+        }
+        for (LedgerEntry entry : operation.getEntries()) {
+            AccountSlot slot = slotOf(entry.getAccountId(), slots);
+            slot.balance = slot.balance.add(entry.signedAmount());
+            slot.inFlight++;
+            accounts.put(slot.accountId, slot);
+        }
+        pending.add(operation);
+        // stop() may have drained the queue between the check above and the add.
+        if (!running && pending.remove(operation)) {
+            queueSpace.release();
+            settle(operation, new AppException("Ledger engine stopped before the operation was written"));
+        }
+        return operation.getCompletion();
+    }
+
+    private static AccountSlot slotOf(Long accountId, AccountSlot[] slots) {
+        for (AccountSlot slot : slots) {
+            if (slot.accountId.equals(accountId)) {
+                return slot;
+            }
+        }
+        throw new IllegalArgumentException("Entry for account " + accountId + " is outside the operation");
+    }
+
+    private void runWriter() {
+        List<LedgerOperation> batch = new ArrayList<>(maxBatchSize);
+        while (running || !pending.isEmpty()) {
+            try {
+                LedgerOperation first = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                gather(batch, System.nanoTime() + batchWindowNanos);
+                queueSpace.release(batch.size());
+                batchSizes.record(batch.size());
+                flush(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Keeps collecting operations until the batch is full or the window closes.
+    private void gather(List<LedgerOperation> batch, long deadline) throws InterruptedException {
+        pending.drainTo(batch, maxBatchSize - batch.size());
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            LedgerOperation next = pending.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+            pending.drainTo(batch, maxBatchSize - batch.size());
+        }
+    }
+
+    private void flush(List<LedgerOperation> batch) {
+        try {
+            ledgerWriter.apply(batch);
+        } catch (RuntimeException ex) {
+            if (batch.size() == 1) {
+                settle(batch.get(0), ex);
+                return;
+            }
+            logger.warn("Ledger batch of {} operations failed, retrying operations individually", batch.size(), ex);
+            for (LedgerOperation operation : batch) {
+                flush(List.of(operation));
+            }
+            return;
+        }
+        long now = System.nanoTime();
+        for (LedgerOperation operation : batch) {
+            commitWait.record(now - operation.getAcceptedAtNanos(), TimeUnit.NANOSECONDS);
+            settle(operation, null);
+        }
+    }
+
+    // Releases the operation's hold on its accounts and completes it. When the
+    // database refused it (cause is set), its in-memory effect is reverted and the
+    // accounts are reloaded next time rather than cached. Accounts left with nothing
+    // in flight move to the settled cache.
+    private void settle(LedgerOperation operation, RuntimeException cause) {
+        for (LedgerEntry entry : operation.getEntries()) {
+            ReentrantLock lock = stripeFor(entry.getAccountId());
+            lock.lock();
+            try {
+                AccountSlot slot = accounts.get(entry.getAccountId());
+                if (cause != null) {
+                    slot.balance = slot.balance.subtract(entry.signedAmount());
+                    slot.stale = true;
+                }
+                if (--slot.inFlight == 0) {
+                    accounts.remove(entry.getAccountId());
+                    if (slot.stale) {
+                        settled.invalidate(entry.getAccountId());
+                    } else {
+                        settled.put(entry.getAccountId(), slot.balance);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (cause != null) {
+                logger.error("Ledger entry for account {} was not persisted", entry.getAccountId(), cause);
+            }
+        }
+        if (cause != null) {
+            operation.getCompletion().completeExceptionally(cause);
+        } else {
+            operation.getCompletion().complete(null);
+        }
+    }
+
+    private static final class AccountSlot {
+        private final Long accountId;
+        private BigDecimal balance;
+        private int inFlight;
+        private boolean stale;
+
+        private AccountSlot(Long accountId, BigDecimal balance) {
+            this.accountId = accountId;
+            this.balance = balance;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.rowland.engineering.rowbank.service.ledger;
+
+import com.rowland.engineering.rowbank.model.TransactionType;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A single balance movement on one account. It becomes one {@code Transaction} row
+ * and one balance adjustment when its {@link LedgerOperation} is written.
+ */
+@Getter
+public class LedgerEntry {
+    private final Long accountId;
+    private final TransactionType transactionType;
+    private final BigDecimal amount;
+    private final String description;
+    private final String reference;
+    private final LocalDateTime timestamp;
+
+    public LedgerEntry(Long accountId, TransactionType transactionType, BigDecimal amount,
+                       String description, String reference, LocalDateTime timestamp) {
+        this.accountId = accountId;
+        this.transactionType = transactionType;
+        this.amount = amount;
+        this.description = description;
+        this.reference = reference;
+        this.timestamp = timestamp;
+    }
+
+    public BigDecimal signedAmount() {
+        return transactionType == TransactionType.DEBIT ? amount.negate() : amount;
+    }
+}
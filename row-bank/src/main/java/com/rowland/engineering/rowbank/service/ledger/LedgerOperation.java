@@ -0,0 +1,25 @@
+package com.rowland.engineering.rowbank.service.ledger;
+
+import com.rowland.engineering.rowbank.model.IdempotencyRecord;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Entries that have been applied to the in-memory ledger together and must be
+ * persisted together, such as the debit and credit of a transfer. The completion
+ * future is resolved once the database transaction containing them commits.
+ */
+@Getter
+public class LedgerOperation {
+    private final List<LedgerEntry> entries;
+    private final IdempotencyRecord idempotencyRecord;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final long acceptedAtNanos = System.nanoTime();
+
+    public LedgerOperation(List<LedgerEntry> entries, IdempotencyRecord idempotencyRecord) {
+        this.entries = entries;
+        this.idempotencyRecord = idempotencyRecord;
+    }
+}
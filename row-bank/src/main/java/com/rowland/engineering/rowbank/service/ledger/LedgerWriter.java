@@ -0,0 +1,195 @@
+package com.rowland.engineering.rowbank.service.ledger;
+
+import com.rowland.engineering.rowbank.exception.AppException;
+import com.rowland.engineering.rowbank.exception.UserNotFoundException;
+import com.rowland.engineering.rowbank.model.BalanceCheckpoint;
+import com.rowland.engineering.rowbank.model.IdempotencyRecord;
+import com.rowland.engineering.rowbank.model.LedgerMode;
+import com.rowland.engineering.rowbank.model.LedgerState;
+import com.rowland.engineering.rowbank.model.OutboxEvent;
+import com.rowland.engineering.rowbank.model.Transaction;
+import com.rowland.engineering.rowbank.repository.BalanceCheckpointRepository;
+import com.rowland.engineering.rowbank.repository.IdempotencyRecordRepository;
+import com.rowland.engineering.rowbank.repository.LedgerStateRepository;
+import com.rowland.engineering.rowbank.repository.OutboxEventRepository;
+import com.rowland.engineering.rowbank.repository.TransactionRepository;
+import com.rowland.engineering.rowbank.repository.UserRepository;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.*;
+
+@Service
+public class LedgerWriter {
+    private static final Logger logger = LoggerFactory.getLogger(LedgerWriter.class);
+
+    private final UserRepository userRepository;
+    private final TransactionRepository transactionRepository;
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final BalanceCheckpointRepository balanceCheckpointRepository;
+    private final OutboxEventRepository outboxEventRepository;
+    private final LedgerStateRepository ledgerStateRepository;
+    private final LedgerMode mode;
+    private final boolean outboxEnabled;
+    private final int outboxPartitions;
+
+    public LedgerWriter(UserRepository userRepository,
+                        TransactionRepository transactionRepository,
+                        IdempotencyRecordRepository idempotencyRecordRepository,
+                        BalanceCheckpointRepository balanceCheckpointRepository,
+                        OutboxEventRepository outboxEventRepository,
+                        LedgerStateRepository ledgerStateRepository,
+                        @Value("${app.ledger.mode:mutable}") LedgerMode mode,
+                        @Value("${app.outbox.enabled:true}") boolean outboxEnabled,
+                        @Value("${app.outbox.partitions:16}") int outboxPartitions) {
+        this.userRepository = userRepository;
+        this.transactionRepository = transactionRepository;
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.balanceCheckpointRepository = balanceCheckpointRepository;
+        this.outboxEventRepository = outboxEventRepository;
+        this.ledgerStateRepository = ledgerStateRepository;
+        this.mode = mode;
+        this.outboxEnabled = outboxEnabled;
+        this.outboxPartitions = outboxPartitions;
+    }
+
+    public LedgerMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Migrates stored balances when {@code app.ledger.mode} differs from the mode the
+     * ledger last ran in; the engine calls this before accepting operations. Moving
+     * to append-only seeds every account's checkpoint with its stored balance as of
+     * now, which already includes all earlier transactions. Moving back to mutable
+     * writes the derived balances into users_table and drops the checkpoints.
+     */
+    @Transactional
+    public void applyModeChange() {
+        LocalDateTime now = LocalDateTime.now();
+        Optional<LedgerState> state = ledgerStateRepository.findById(LedgerState.ID);
+        // A database with checkpoints but no recorded mode already ran append-only.
+        LedgerMode previous = state.map(LedgerState::getMode).orElse(
+                balanceCheckpointRepository.count() > 0 ? LedgerMode.APPEND_ONLY : LedgerMode.MUTABLE);
+        if (previous != mode) {
+            if (mode == LedgerMode.APPEND_ONLY) {
+                balanceCheckpointRepository.deleteAllInBatch();
+                int seeded = balanceCheckpointRepository.seedFromStoredBalances(now);
+                logger.info("Ledger switched to append-only: seeded {} balance checkpoints at {}", seeded, now);
+            } else {
+                int stored = userRepository.storeLedgerBalances();
+                balanceCheckpointRepository.deleteAllInBatch();
+                logger.info("Ledger switched to mutable: stored {} derived balances", stored);
+            }
+        }
+        if (state.isEmpty() || previous != mode) {
+            ledgerStateRepository.save(new LedgerState(LedgerState.ID, mode, now));
+        }
+    }
+
+    public BigDecimal loadBalance(Long accountId) {
+        Optional<BigDecimal> balance = mode == LedgerMode.APPEND_ONLY
+                ? transactionRepository.findLedgerBalance(accountId)
+                : userRepository.findBalanceById(accountId);
+        return balance.orElseThrow(() -> new UserNotFoundException("User with id: " + accountId + " not found"));
+    }
+
+    /**
+     * Persists the whole batch in one transaction. Deltas are netted per account so
+     * each account gets a single balance UPDATE no matter how many entries touch it,
+     * and the transaction rows go out as one JDBC batch. Accounts are updated in
+     * ascending id order so concurrent writers always lock rows in the same order
+     * and cannot deadlock. In append-only mode only the transaction rows are
+     * written; balances are derived from them. Each entry also gets an outbox row
+     * in the same transaction, so downstream systems see exactly what committed.
+     */
+    @Transactional
+    public void apply(List<LedgerOperation> batch) {
+        Instant now = Instant.now();
+        Map<Long, BigDecimal> deltas = new TreeMap<>();
+        List<Transaction> transactions = new ArrayList<>();
+        List<IdempotencyRecord> idempotencyRecords = new ArrayList<>();
+        List<OutboxEvent> outboxEvents = new ArrayList<>();
+        for (LedgerOperation operation : batch) {
+            if (operation.getIdempotencyRecord() != null) {
+                idempotencyRecords.add(operation.getIdempotencyRecord());
+            }
+            for (LedgerEntry entry : operation.getEntries()) {
+                deltas.merge(entry.getAccountId(), entry.signedAmount(), BigDecimal::add);
+                transactions.add(Transaction.builder()
+                        .transactionType(entry.getTransactionType())
+                        .amount(entry.getAmount())
+                        .timestamp(entry.getTimestamp())
+                        .description(entry.getDescription())
+                        .reference(entry.getReference())
+                        .user(userRepository.getReferenceById(entry.getAccountId()))
+                        .build());
+                if (outboxEnabled) {
+                    outboxEvents.add(OutboxEvent.builder()
+                            .partitionNo(Math.floorMod(entry.getAccountId(), outboxPartitions))
+                            .accountId(entry.getAccountId())
+                            .transactionType(entry.getTransactionType())
+                            .amount(entry.getAmount())
+                            .description(entry.getDescription())
+                            .reference(entry.getReference())
+                            .occurredAt(entry.getTimestamp())
+                            .createdAt(now)
+                            .build());
+                }
+            }
+        }
+        if (mode == LedgerMode.MUTABLE) {
+            deltas.forEach((accountId, delta) -> {
+                if (userRepository.adjustBalance(accountId, delta, now) == 0) {
+                    throw new AppException("Account " + accountId + " is missing or has insufficient funds");
+                }
+            });
+        }
+        transactionRepository.saveAll(transactions);
+        idempotencyRecordRepository.saveAll(idempotencyRecords);
+        outboxEventRepository.saveAll(outboxEvents);
+    }
+
+    /**
+     * Folds the transactions timestamped in [from, to) into the checkpoints of the
+     * accounts they touch. Checkpoints are locked first, and any already moved past
+     * {@code from} by another run are left alone, so overlapping runs never fold a
+     * transaction twice.
+     */
+    @Transactional
+    public int checkpoint(LocalDateTime from, LocalDateTime to) {
+        List<AccountAmount> deltas = transactionRepository.sumByAccount(from, to);
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        List<Long> userIds = deltas.stream().map(AccountAmount::userId).toList();
+        Map<Long, BalanceCheckpoint> checkpoints = new HashMap<>();
+        balanceCheckpointRepository.findAllForUpdate(userIds)
+                .forEach(checkpoint -> checkpoints.put(checkpoint.getUserId(), checkpoint));
+
+        List<Long> missing = userIds.stream().filter(id -> !checkpoints.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            userRepository.findOpeningBalances(missing).forEach(opening -> checkpoints.put(opening.userId(),
+                    new BalanceCheckpoint(opening.userId(), opening.amount(), from)));
+        }
+
+        List<BalanceCheckpoint> folded = new ArrayList<>(deltas.size());
+        for (AccountAmount delta : deltas) {
+            BalanceCheckpoint checkpoint = checkpoints.get(delta.userId());
+            if (checkpoint == null || checkpoint.getCoveredUntil().isAfter(from)) {
+                continue;
+            }
+            checkpoint.setBalance(checkpoint.getBalance().add(delta.amount()));
+            checkpoint.setCoveredUntil(to);
+            folded.add(checkpoint);
+        }
+        balanceCheckpointRepository.saveAll(folded);
+        return folded.size();
+    }
+}
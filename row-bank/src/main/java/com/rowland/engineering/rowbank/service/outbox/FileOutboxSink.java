@@ -0,0 +1,74 @@
+package com.rowland.engineering.rowbank.service.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rowland.engineering.rowbank.dto.OutboxMessage;
+import com.rowland.engineering.rowbank.exception.AppException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends each event as one JSON line to a local file, forcing it to disk before
+ * the batch counts as published. The default sink until a broker is wired in.
+ */
+@Component
+@ConditionalOnProperty(name = "app.outbox.sink", havingValue = "file", matchIfMissing = true)
+public class FileOutboxSink implements OutboxSink {
+
+    private final ObjectMapper objectMapper;
+    private final boolean fsync;
+    private final FileChannel channel;
+
+    public FileOutboxSink(ObjectMapper objectMapper,
+                          @Value("${app.outbox.file.path:outbox/ledger-events.jsonl}") Path path,
+                          @Value("${app.outbox.file.fsync:true}") boolean fsync) throws IOException {
+        this.objectMapper = objectMapper;
+        this.fsync = fsync;
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public void publish(List<OutboxMessage> messages) {
+        ByteArrayOutputStream lines = new ByteArrayOutputStream(messages.size() * 256);
+        try {
+            for (OutboxMessage message : messages) {
+                lines.writeBytes(objectMapper.writeValueAsBytes(message));
+                lines.write('\n');
+            }
+        } catch (JsonProcessingException ex) {
+            throw new AppException("Could not serialise outbox message", ex);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+        try {
+            synchronized (channel) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (fsync) {
+                    channel.force(false);
+                }
+            }
+        } catch (IOException ex) {
+            throw new AppException("Could not write outbox file", ex);
+        }
+    }
+}
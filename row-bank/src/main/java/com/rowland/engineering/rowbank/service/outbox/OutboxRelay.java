@@ -0,0 +1,266 @@
+package com.rowland.engineering.rowbank.service.outbox;
+
+import com.rowland.engineering.rowbank.dto.OutboxMessage;
+import com.rowland.engineering.rowbank.model.OutboxLease;
+import com.rowland.engineering.rowbank.repository.OutboxEventRepository;
+import com.rowland.engineering.rowbank.repository.OutboxLeaseRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Publishes outbox rows to the configured {@link OutboxSink}. Each partition is
+ * leased to one relay at a time with a conditional update, so instances never wait
+ * on each other's locks and a partition left by a dead instance is taken over once
+ * its lease runs out. The owner drains its partitions in id order, a batch at a
+ * time, and deletes rows only after the sink accepted them: delivery is at least
+ * once and in order per account.
+ * <p>
+ * Passes run back to back on the relay's own loop thread while they publish; after
+ * an empty pass the loop waits {@code app.outbox.relay-interval-ms}, doubling up to
+ * {@code app.outbox.max-idle-ms}, so an idle relay costs a few lease checks a second.
+ */
+@Service
+@ConditionalOnProperty(name = "app.outbox.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxLeaseRepository outboxLeaseRepository;
+    private final OutboxSink sink;
+    private final int partitions;
+    private final Pageable batch;
+    private final Duration leaseDuration;
+    private final String owner;
+    private final long relayIntervalMs;
+    private final long maxIdleMs;
+    private final ExecutorService executor;
+    private Thread loop;
+    private volatile boolean running;
+
+    private final Timer lag;
+    private final Timer publishTime;
+    private final Counter published;
+    private final Counter failures;
+    private final AtomicLong backlog = new AtomicLong();
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long pausedUntilMillis;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       OutboxLeaseRepository outboxLeaseRepository,
+                       OutboxSink sink,
+                       MeterRegistry meterRegistry,
+                       @Value("${app.outbox.partitions:16}") int partitions,
+                       @Value("${app.outbox.batch-size:1000}") int batchSize,
+                       @Value("${app.outbox.lease-ms:30000}") long leaseMs,
+                       @Value("${app.outbox.relay-threads:4}") int threads,
+                       @Value("${app.outbox.relay-interval-ms:100}") long relayIntervalMs,
+                       @Value("${app.outbox.max-idle-ms:2000}") long maxIdleMs) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.outboxLeaseRepository = outboxLeaseRepository;
+        this.sink = sink;
+        this.partitions = partitions;
+        this.batch = PageRequest.of(0, batchSize);
+        this.leaseDuration = Duration.ofMillis(leaseMs);
+        this.owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+        this.relayIntervalMs = relayIntervalMs;
+        this.maxIdleMs = Math.max(relayIntervalMs, maxIdleMs);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "outbox-relay-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.lag = Timer.builder("outbox.publish.lag")
+                .description("Time from a ledger commit to its event being published")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.publishTime = Timer.builder("outbox.publish.batch")
+                .description("Time the sink took to accept one batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.published = Counter.builder("outbox.events.published")
+                .description("Ledger events accepted by the outbox sink")
+                .register(meterRegistry);
+        this.failures = Counter.builder("outbox.publish.failures")
+                .description("Batches the outbox sink refused")
+                .register(meterRegistry);
+        Gauge.builder("outbox.backlog", backlog, AtomicLong::get)
+                .description("Outbox events not yet published")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        registerPartitions();
+        running = true;
+        loop = new Thread(this::run, "outbox-relay-loop");
+        loop.setDaemon(true);
+        loop.start();
+    }
+
+    private void registerPartitions() {
+        Set<Integer> existing = outboxLeaseRepository.findAll().stream()
+                .map(OutboxLease::getPartitionNo)
+                .collect(Collectors.toSet());
+        List<OutboxLease> missing = new ArrayList<>();
+        for (int partition = 0; partition < partitions; partition++) {
+            if (!existing.contains(partition)) {
+                missing.add(new OutboxLease(partition, null, Instant.EPOCH));
+            }
+        }
+        try {
+            outboxLeaseRepository.saveAll(missing);
+        } catch (DataIntegrityViolationException ex) {
+            // Another instance registered them at the same time.
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        loop.interrupt();
+        loop.join();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        outboxLeaseRepository.releaseAll(owner, Instant.now());
+    }
+
+    /**
+     * Drains every partition this instance can lease once and returns how many events
+     * were published. Passes never overlap, so a partition is drained by one thread.
+     */
+    public synchronized int relay() {
+        if (System.currentTimeMillis() < pausedUntilMillis) {
+            return 0;
+        }
+        List<Future<Integer>> drains = new ArrayList<>(partitions);
+        for (int partition = 0; partition < partitions; partition++) {
+            int current = partition;
+            drains.add(executor.submit(() -> drain(current)));
+        }
+        int total = 0;
+        for (Future<Integer> drain : drains) {
+            try {
+                total += drain.get();
+            } catch (ExecutionException ex) {
+                logger.warn("Outbox relay pass failed", ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return total;
+            }
+        }
+        return total;
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.backlog-check-ms:30000}")
+    public void refreshBacklog() {
+        backlog.set(outboxEventRepository.count());
+    }
+
+    int drain(int partition) {
+        Instant now = Instant.now();
+        if (outboxLeaseRepository.tryAcquire(partition, owner, now.plus(leaseDuration), now) == 0) {
+            return 0;
+        }
+        int total = 0;
+        while (true) {
+            List<OutboxMessage> messages = outboxEventRepository.findPending(partition, batch);
+            if (messages.isEmpty()) {
+                return total;
+            }
+            try {
+                publishTime.record(() -> sink.publish(messages));
+            } catch (RuntimeException ex) {
+                // Stop this partition here so nothing later in it overtakes the failed batch.
+                failures.increment();
+                backOff(ex);
+                return total;
+            }
+            consecutiveFailures.set(0);
+            outboxEventRepository.deletePublished(messages.stream().map(OutboxMessage::eventId).toList());
+            Instant publishedAt = Instant.now();
+            for (OutboxMessage message : messages) {
+                lag.record(Duration.between(message.createdAt(), publishedAt));
+            }
+            published.increment(messages.size());
+            total += messages.size();
+            if (messages.size() < batch.getPageSize()) {
+                return total;
+            }
+            // Extend the lease before every further batch so it cannot lapse mid-drain.
+            now = Instant.now();
+            if (outboxLeaseRepository.tryAcquire(partition, owner, now.plus(leaseDuration), now) == 0) {
+                return total;
+            }
+        }
+    }
+
+    private void run() {
+        long idleMs = relayIntervalMs;
+        try {
+            Thread.sleep(relayIntervalMs);
+            while (running) {
+                long pausedMs = pausedUntilMillis - System.currentTimeMillis();
+                if (pausedMs > 0) {
+                    Thread.sleep(pausedMs);
+                    continue;
+                }
+                int relayed;
+                try {
+                    relayed = relay();
+                } catch (RuntimeException ex) {
+                    logger.warn("Outbox relay pass failed", ex);
+                    relayed = 0;
+                }
+                if (relayed > 0) {
+                    idleMs = relayIntervalMs;
+                } else {
+                    Thread.sleep(idleMs);
+                    idleMs = Math.min(maxIdleMs, idleMs * 2);
+                }
+            }
+        } catch (InterruptedException ex) {
+            // stop() interrupts the loop out of its wait.
+        }
+    }
+
+    private void backOff(RuntimeException cause) {
+        int failed = consecutiveFailures.incrementAndGet();
+        long delayMs = Math.min(MAX_BACKOFF_MS, 100L << Math.min(failed, 10));
+        pausedUntilMillis = System.currentTimeMillis() + delayMs;
+        logger.warn("Outbox sink failed {} times in a row, pausing relay for {} ms", failed, delayMs, cause);
+    }
+}
@@ -0,0 +1,15 @@
+package com.rowland.engineering.rowbank.service.outbox;
+
+import com.rowland.engineering.rowbank.dto.OutboxMessage;
+
+import java.util.List;
+
+/**
+ * Where the outbox relay publishes ledger events. {@link #publish} should return
+ * only once the messages are safely accepted; throwing leaves them in the outbox
+ * and the same batch, in the same order, is offered again later.
+ */
+public interface OutboxSink {
+
+    void publish(List<OutboxMessage> messages);
+}
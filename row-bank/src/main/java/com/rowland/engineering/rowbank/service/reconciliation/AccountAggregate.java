@@ -0,0 +1,10 @@
+package com.rowland.engineering.rowbank.service.reconciliation;
+
+import java.math.BigDecimal;
+
+/**
+ * An account's stored balance and the balance its transactions add up to, read in
+ * one statement so both come from the same snapshot.
+ */
+public record AccountAggregate(Long userId, BigDecimal balance, BigDecimal expectedBalance, Long lastTransactionId) {
+}
@@ -0,0 +1,303 @@
+package com.rowland.engineering.rowbank.service.reconciliation;
+
+import com.rowland.engineering.rowbank.dto.ReconciliationReport;
+import com.rowland.engineering.rowbank.dto.ReconciliationSummary;
+import com.rowland.engineering.rowbank.exception.BadRequestException;
+import com.rowland.engineering.rowbank.model.AccountReconciliation;
+import com.rowland.engineering.rowbank.model.LedgerMode;
+import com.rowland.engineering.rowbank.model.ReconciliationWatermark;
+import com.rowland.engineering.rowbank.repository.AccountReconciliationRepository;
+import com.rowland.engineering.rowbank.repository.ReconciliationWatermarkRepository;
+import com.rowland.engineering.rowbank.repository.TransactionRepository;
+import com.rowland.engineering.rowbank.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Checks that each stored balance equals the account's opening balance plus its
+ * signed transactions. A full sweep aggregates {@code transactions_table} for
+ * ranges of {@code app.reconciliation.chunk-size} account ids in parallel and
+ * keeps the result per account. Incremental runs then only recheck accounts with
+ * transactions after the watermark, adding just those transactions to the kept
+ * sums, so their cost follows the day's activity rather than the account count.
+ * <p>
+ * The watermark relies on transaction ids being committed in increasing order,
+ * which holds while one ledger writer persists them. A transaction that commits
+ * below the watermark anyway is not lost: the account shows as a mismatch until
+ * the next full sweep. Accounts opened before opening balances were recorded are
+ * trusted as they stand on their first full sweep, which records their opening
+ * balance from the stored balance and transactions.
+ * <p>
+ * Balances are only stored in mutable ledger mode; in append-only mode they are
+ * derived from the transactions and there is nothing to reconcile.
+ */
+@Service
+public class BalanceReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceReconciler.class);
+
+    private static final int MAX_LOGGED_MISMATCHES = 20;
+
+    private final ReconciliationWriter reconciliationWriter;
+    private final UserRepository userRepository;
+    private final TransactionRepository transactionRepository;
+    private final AccountReconciliationRepository accountReconciliationRepository;
+    private final ReconciliationWatermarkRepository reconciliationWatermarkRepository;
+    private final LedgerMode mode;
+    private final long chunkSize;
+    private final int batchSize;
+    private final ExecutorService workers;
+    private final ExecutorService coordinator;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong mismatchedAccounts = new AtomicLong();
+    private final AtomicReference<BigDecimal> mismatchedAmount = new AtomicReference<>(BigDecimal.ZERO);
+    private final MeterRegistry meterRegistry;
+    private volatile ReconciliationSummary lastRun;
+
+    public BalanceReconciler(ReconciliationWriter reconciliationWriter,
+                             UserRepository userRepository,
+                             TransactionRepository transactionRepository,
+                             AccountReconciliationRepository accountReconciliationRepository,
+                             ReconciliationWatermarkRepository reconciliationWatermarkRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.ledger.mode:mutable}") LedgerMode mode,
+                             @Value("${app.reconciliation.chunk-size:5000}") long chunkSize,
+                             @Value("${app.reconciliation.batch-size:1000}") int batchSize,
+                             @Value("${app.reconciliation.threads:4}") int threads) {
+        this.reconciliationWriter = reconciliationWriter;
+        this.userRepository = userRepository;
+        this.transactionRepository = transactionRepository;
+        this.accountReconciliationRepository = accountReconciliationRepository;
+        this.reconciliationWatermarkRepository = reconciliationWatermarkRepository;
+        this.meterRegistry = meterRegistry;
+        this.mode = mode;
+        this.chunkSize = chunkSize;
+        this.batchSize = batchSize;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "reconciliation-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.coordinator = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "reconciliation-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("reconciliation.mismatches", mismatchedAccounts, AtomicLong::get)
+                .description("Accounts whose balance does not match their transactions")
+                .register(meterRegistry);
+        Gauge.builder("reconciliation.mismatch.amount", mismatchedAmount, amount -> amount.get().doubleValue())
+                .description("Total absolute difference over mismatched accounts")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${app.reconciliation.interval-ms:60000}",
+            initialDelayString = "${app.reconciliation.interval-ms:60000}")
+    public void scheduledIncremental() {
+        if (mode == LedgerMode.MUTABLE && !running.get()) {
+            startQuietly(ReconciliationSummary.Mode.INCREMENTAL);
+        }
+    }
+
+    @Scheduled(cron = "${app.reconciliation.full-sweep-cron:0 30 2 * * SUN}")
+    public void scheduledFullSweep() {
+        if (mode == LedgerMode.MUTABLE) {
+            startQuietly(ReconciliationSummary.Mode.FULL);
+        }
+    }
+
+    /**
+     * Starts a run in the background. An incremental run with no earlier full sweep
+     * to build on does a full sweep instead.
+     */
+    public void start(ReconciliationSummary.Mode runMode) {
+        claim();
+        try {
+            coordinator.execute(() -> {
+                try {
+                    execute(runMode);
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            running.set(false);
+            throw ex;
+        }
+    }
+
+    /**
+     * Runs on the calling thread. An incremental run with no earlier full sweep to
+     * build on does a full sweep instead.
+     */
+    public ReconciliationSummary reconcile(ReconciliationSummary.Mode runMode) {
+        claim();
+        try {
+            return execute(runMode);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public ReconciliationReport report(int limit) {
+        List<ReconciliationReport.Mismatch> mismatches = accountReconciliationRepository
+                .findMismatches(PageRequest.of(0, limit)).stream()
+                .map(row -> new ReconciliationReport.Mismatch(row.getUserId(), row.getBalance(),
+                        row.getExpectedBalance(), row.getDifference(), row.getCheckedAt()))
+                .toList();
+        return new ReconciliationReport(lastRun, accountReconciliationRepository.countByMismatchedTrue(),
+                accountReconciliationRepository.sumMismatchedDifference(), mismatches);
+    }
+
+    private void startQuietly(ReconciliationSummary.Mode runMode) {
+        try {
+            start(runMode);
+        } catch (BadRequestException ex) {
+            logger.debug("Scheduled {} reconciliation skipped: {}", runMode, ex.getMessage());
+        }
+    }
+
+    private void claim() {
+        if (mode != LedgerMode.MUTABLE) {
+            throw new BadRequestException("Balances are derived from transactions in " + mode + " mode; there is nothing to reconcile");
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new BadRequestException("A reconciliation run is already in progress");
+        }
+    }
+
+    private ReconciliationSummary execute(ReconciliationSummary.Mode requested) {
+        Instant startedAt = Instant.now();
+        Optional<ReconciliationWatermark> watermark = reconciliationWatermarkRepository.findById(ReconciliationWatermark.ID);
+        ReconciliationSummary.Mode runMode = watermark.isPresent() ? requested : ReconciliationSummary.Mode.FULL;
+        Tally tally = new Tally();
+        long nextWatermark = watermark.map(ReconciliationWatermark::getTransactionId).orElse(0L);
+        boolean complete = false;
+        try {
+            if (runMode == ReconciliationSummary.Mode.FULL) {
+                nextWatermark = fullSweep(tally, startedAt);
+            } else {
+                nextWatermark = incremental(watermark.get().getTransactionId(), tally, startedAt);
+            }
+            ReconciliationWatermark saved = watermark.orElseGet(() -> new ReconciliationWatermark(
+                    ReconciliationWatermark.ID, 0L, startedAt, startedAt));
+            saved.setTransactionId(nextWatermark);
+            saved.setUpdatedAt(Instant.now());
+            if (runMode == ReconciliationSummary.Mode.FULL) {
+                saved.setFullSweepAt(startedAt);
+            }
+            reconciliationWatermarkRepository.save(saved);
+            complete = true;
+        } catch (RuntimeException ex) {
+            logger.error("{} reconciliation failed; the watermark was left where it was", runMode, ex);
+        }
+
+        mismatchedAccounts.set(accountReconciliationRepository.countByMismatchedTrue());
+        mismatchedAmount.set(accountReconciliationRepository.sumMismatchedDifference());
+        Instant finishedAt = Instant.now();
+        Counter.builder("reconciliation.accounts.checked")
+                .description("Accounts whose balance was checked against their transactions")
+                .tag("mode", runMode.name().toLowerCase())
+                .register(meterRegistry)
+                .increment(tally.checked.get());
+        Timer.builder("reconciliation.run.duration")
+                .description("Time to run one reconciliation")
+                .tag("mode", runMode.name().toLowerCase())
+                .tag("outcome", complete ? "success" : "failure")
+                .register(meterRegistry)
+                .record(Duration.between(startedAt, finishedAt));
+        ReconciliationSummary summary = new ReconciliationSummary(runMode, startedAt, finishedAt,
+                tally.checked.get(), tally.mismatched.get(), nextWatermark, complete);
+        lastRun = summary;
+        if (summary.mismatchesFound() > 0) {
+            logger.warn("{} reconciliation checked {} accounts and found {} whose balance does not match their transactions",
+                    runMode, summary.accountsChecked(), summary.mismatchesFound());
+        } else {
+            logger.debug("{} reconciliation checked {} accounts", runMode, summary.accountsChecked());
+        }
+        return summary;
+    }
+
+    // Returns the watermark to store: the newest transaction id before the sweep began.
+    private long fullSweep(Tally tally, Instant checkedAt) {
+        long watermark = transactionRepository.findMaxId().orElse(0L);
+        Optional<Long> minId = userRepository.findMinId();
+        Optional<Long> maxId = userRepository.findMaxId();
+        List<CompletableFuture<Void>> ranges = new ArrayList<>();
+        if (minId.isPresent() && maxId.isPresent()) {
+            for (long first = Math.floorDiv(minId.get(), chunkSize) * chunkSize; first <= maxId.get(); first += chunkSize) {
+                long from = first;
+                ranges.add(CompletableFuture.runAsync(
+                        () -> tally.add(reconciliationWriter.sweepRange(from, from + chunkSize, checkedAt)), workers));
+            }
+        }
+        CompletableFuture.allOf(ranges.toArray(CompletableFuture[]::new)).join();
+        return watermark;
+    }
+
+    private long incremental(long after, Tally tally, Instant checkedAt) {
+        long upTo = transactionRepository.findMaxId().orElse(after);
+        if (upTo <= after) {
+            return after;
+        }
+        List<Long> touched = transactionRepository.findAccountsWithTransactionsBetween(after, upTo);
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        for (int i = 0; i < touched.size(); i += batchSize) {
+            List<Long> batch = touched.subList(i, Math.min(i + batchSize, touched.size()));
+            batches.add(CompletableFuture.runAsync(() -> tally.add(reconciliationWriter.recheck(batch, checkedAt)), workers));
+        }
+        CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new)).join();
+        return upTo;
+    }
+
+    private static final class Tally {
+        private final AtomicLong checked = new AtomicLong();
+        private final AtomicLong mismatched = new AtomicLong();
+        private final AtomicInteger logged = new AtomicInteger();
+
+        private void add(List<AccountReconciliation> rows) {
+            checked.addAndGet(rows.size());
+            for (AccountReconciliation row : rows) {
+                if (!row.isMismatched()) {
+                    continue;
+                }
+                mismatched.incrementAndGet();
+                if (logged.incrementAndGet() <= MAX_LOGGED_MISMATCHES) {
+                    logger.warn("Account {} has balance {} but its transactions add up to {}",
+                            row.getUserId(), row.getBalance(), row.getExpectedBalance());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.rowland.engineering.rowbank.service.reconciliation;
+
+import com.rowland.engineering.rowbank.model.AccountReconciliation;
+import com.rowland.engineering.rowbank.repository.AccountReconciliationRepository;
+import com.rowland.engineering.rowbank.repository.UserRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+
+@Service
+@RequiredArgsConstructor
+public class ReconciliationWriter {
+    private static final Logger logger = LoggerFactory.getLogger(ReconciliationWriter.class);
+
+    private final UserRepository userRepository;
+    private final AccountReconciliationRepository accountReconciliationRepository;
+
+    /**
+     * Recomputes every account with an id in [fromId, toId) from all of its
+     * transactions and replaces the range's reconciliation rows. The rows are deleted
+     * and inserted rather than merged, so they go out as JDBC batches without a
+     * select per row. Accounts with no recorded opening balance get one first.
+     * Returns the rows checked.
+     */
+    @Transactional
+    public List<AccountReconciliation> sweepRange(Long fromId, Long toId, Instant checkedAt) {
+        int baselined = userRepository.recordMissingOpeningBalances(fromId, toId);
+        if (baselined > 0) {
+            logger.info("Recorded opening balances for {} older accounts in [{}, {})", baselined, fromId, toId);
+        }
+        List<AccountAggregate> aggregates = userRepository.aggregateRange(fromId, toId);
+        accountReconciliationRepository.deleteRange(fromId, toId);
+        List<AccountReconciliation> rows = new ArrayList<>(aggregates.size());
+        for (AccountAggregate aggregate : aggregates) {
+            rows.add(update(new AccountReconciliation(aggregate.userId()), aggregate, checkedAt));
+        }
+        accountReconciliationRepository.saveAll(rows);
+        return rows;
+    }
+
+    /**
+     * Brings the given accounts' rows up to date by adding only the transactions
+     * after each row's last reconciled one. Accounts without a row yet, such as
+     * those opened since the last full sweep, are computed from all their
+     * transactions. Returns the rows checked.
+     */
+    @Transactional
+    public List<AccountReconciliation> recheck(Collection<Long> userIds, Instant checkedAt) {
+        Map<Long, AccountAggregate> aggregates = new HashMap<>();
+        accountReconciliationRepository.recheck(userIds).forEach(aggregate -> aggregates.put(aggregate.userId(), aggregate));
+        List<Long> unseen = userIds.stream().filter(id -> !aggregates.containsKey(id)).toList();
+        if (!unseen.isEmpty()) {
+            userRepository.aggregateAccounts(unseen).forEach(aggregate -> aggregates.put(aggregate.userId(), aggregate));
+        }
+
+        Map<Long, AccountReconciliation> rows = new HashMap<>();
+        accountReconciliationRepository.findAllById(aggregates.keySet()).forEach(row -> rows.put(row.getUserId(), row));
+        List<AccountReconciliation> checked = new ArrayList<>(aggregates.size());
+        List<AccountReconciliation> created = new ArrayList<>();
+        for (AccountAggregate aggregate : aggregates.values()) {
+            AccountReconciliation row = rows.get(aggregate.userId());
+            if (row == null) {
+                row = new AccountReconciliation(aggregate.userId());
+                created.add(row);
+            }
+            checked.add(update(row, aggregate, checkedAt));
+        }
+        accountReconciliationRepository.saveAll(created);
+        return checked;
+    }
+
+    private static AccountReconciliation update(AccountReconciliation row, AccountAggregate aggregate, Instant checkedAt) {
+        row.setExpectedBalance(aggregate.expectedBalance());
+        row.setBalance(aggregate.balance());
+        row.setThroughTransactionId(aggregate.lastTransactionId());
+        row.setMismatched(aggregate.balance().compareTo(aggregate.expectedBalance()) != 0);
+        row.setCheckedAt(checkedAt);
+        return row;
+    }
+}
@@ -0,0 +1,179 @@
+package com.rowland.engineering.rowbank.service.shard;
+
+import com.rowland.engineering.rowbank.exception.AppException;
+import com.rowland.engineering.rowbank.exception.TooManyRequestsException;
+import com.rowland.engineering.rowbank.exception.UserNotFoundException;
+import com.rowland.engineering.rowbank.model.TransactionType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static com.rowland.engineering.rowbank.service.shard.ShardDirectory.TransferState.ABORTED;
+import static com.rowland.engineering.rowbank.service.shard.ShardDirectory.TransferState.COMMITTED;
+import static com.rowland.engineering.rowbank.service.shard.ShardDirectory.TransferState.COMPLETED;
+import static com.rowland.engineering.rowbank.service.shard.ShardDirectory.TransferState.PREPARING;
+
+/**
+ * Two-phase transfer between accounts on different shards, with the directory's
+ * transfer log as coordinator:
+ * <ol>
+ *     <li>the transfer is logged as PREPARING;</li>
+ *     <li>the source shard takes the money out and records a PREPARED participant row,
+ *     the target shard locks the account and records its own;</li>
+ *     <li>flipping the log to COMMITTED is the decision - before it the transfer aborts,
+ *     after it the transfer completes;</li>
+ *     <li>each shard turns its PREPARED row into COMMITTED and writes its ledger row,
+ *     then the log is marked COMPLETED.</li>
+ * </ol>
+ * Every step after the decision is idempotent, so {@link #recover} can finish or
+ * roll back transfers left behind by a crash.
+ */
+public class CrossShardTransferCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(CrossShardTransferCoordinator.class);
+
+    private static final String PREPARED = "PREPARED";
+
+    private final ShardDirectory directory;
+    private final ShardedAccountStore store;
+
+    CrossShardTransferCoordinator(ShardDirectory directory, ShardedAccountStore store) {
+        this.directory = directory;
+        this.store = store;
+    }
+
+    String transfer(ShardDirectory.Entry from, ShardDirectory.Entry to, BigDecimal amount, String description) {
+        String transferId = UUID.randomUUID().toString();
+        directory.logTransfer(transferId, from.userId(), to.userId(), amount, description);
+        try {
+            prepareDebit(store.shard(from.shardId()), transferId, from.userId(), amount);
+            prepareCredit(store.shard(to.shardId()), transferId, to.userId(), amount);
+        } catch (RuntimeException ex) {
+            abort(transferId, from.userId(), to.userId(), amount);
+            if (ex instanceof ShardedAccountStore.AccountRelocatedException) {
+                throw new TooManyRequestsException("Account is being moved between shards, retry shortly", 1);
+            }
+            throw ex;
+        }
+        if (!directory.transitionTransfer(transferId, PREPARING, COMMITTED)) {
+            // Recovery judged this transfer abandoned and rolled it back while we were preparing.
+            abort(transferId, from.userId(), to.userId(), amount);
+            throw new AppException("Transfer " + transferId + " timed out and was rolled back");
+        }
+        complete(new ShardDirectory.TransferLog(transferId, from.userId(), to.userId(), amount, description, COMMITTED));
+        return transferId;
+    }
+
+    /**
+     * Finishes transfers whose log has not moved since {@code updatedBefore}: those
+     * that reached COMMITTED are completed, those still PREPARING are aborted.
+     */
+    public int recover(Instant updatedBefore) {
+        List<ShardDirectory.TransferLog> unfinished = directory.findUnfinishedTransfers(updatedBefore);
+        for (ShardDirectory.TransferLog log : unfinished) {
+            try {
+                if (log.state() == COMMITTED) {
+                    complete(log);
+                } else if (directory.transitionTransfer(log.transferId(), PREPARING, ABORTED)) {
+                    abortParticipants(log.transferId(), log.fromUserId(), log.toUserId(), log.amount());
+                }
+            } catch (RuntimeException ex) {
+                logger.warn("Could not recover transfer {}, will retry", log.transferId(), ex);
+            }
+        }
+        if (!unfinished.isEmpty()) {
+            logger.info("Recovered {} unfinished cross-shard transfers", unfinished.size());
+        }
+        return unfinished.size();
+    }
+
+    private void prepareDebit(Shard shard, String transferId, long userId, BigDecimal amount) {
+        shard.transactions().execute(status -> {
+            ShardedAccountStore.lockAccount(shard, userId);
+            ShardedAccountStore.debit(shard, userId, amount);
+            insertParticipant(shard, transferId, userId, amount, PREPARED);
+            return null;
+        });
+    }
+
+    // The lock only orders this against a concurrent move; once committed it is the
+    // PREPARED row that keeps the account here, since the rebalancer skips accounts
+    // with a prepared transfer.
+    private void prepareCredit(Shard shard, String transferId, long userId, BigDecimal amount) {
+        shard.transactions().execute(status -> {
+            ShardedAccountStore.lockAccount(shard, userId);
+            insertParticipant(shard, transferId, userId, amount, PREPARED);
+            return null;
+        });
+    }
+
+    private void complete(ShardDirectory.TransferLog log) {
+        Shard source = owner(log.fromUserId());
+        source.transactions().execute(status -> {
+            if (resolveParticipant(source, log.transferId(), log.fromUserId(), COMMITTED.name())) {
+                ShardedAccountStore.insertTransaction(source, log.fromUserId(), TransactionType.DEBIT,
+                        log.amount(), log.description(), log.transferId());
+            }
+            return null;
+        });
+        Shard target = owner(log.toUserId());
+        target.transactions().execute(status -> {
+            if (resolveParticipant(target, log.transferId(), log.toUserId(), COMMITTED.name())) {
+                target.jdbc().update("update users_table set balance = balance + ? where id = ?", log.amount(), log.toUserId());
+                ShardedAccountStore.insertTransaction(target, log.toUserId(), TransactionType.CREDIT,
+                        log.amount(), log.description(), log.transferId());
+            }
+            return null;
+        });
+        directory.transitionTransfer(log.transferId(), COMMITTED, COMPLETED);
+    }
+
+    private void abort(String transferId, long fromUserId, long toUserId, BigDecimal amount) {
+        directory.transitionTransfer(transferId, PREPARING, ABORTED);
+        abortParticipants(transferId, fromUserId, toUserId, amount);
+    }
+
+    private void abortParticipants(String transferId, long fromUserId, long toUserId, BigDecimal amount) {
+        abortParticipant(owner(fromUserId), transferId, fromUserId, amount, true);
+        abortParticipant(owner(toUserId), transferId, toUserId, amount, false);
+    }
+
+    /**
+     * Rolls back one side. Where that side never prepared, an ABORTED row is left in
+     * its place so a prepare that is still in flight fails on the primary key instead
+     * of holding money for a transfer that no longer exists.
+     */
+    private void abortParticipant(Shard shard, String transferId, long userId, BigDecimal amount, boolean refund) {
+        shard.transactions().execute(status -> {
+            if (resolveParticipant(shard, transferId, userId, ABORTED.name())) {
+                if (refund) {
+                    shard.jdbc().update("update users_table set balance = balance + ? where id = ?", amount, userId);
+                }
+            } else if (shard.jdbc().queryForList("select state from shard_transfer_participants " +
+                    "where transfer_id = ? and user_id = ?", String.class, transferId, userId).isEmpty()) {
+                insertParticipant(shard, transferId, userId, amount, ABORTED.name());
+            }
+            return null;
+        });
+    }
+
+    private static boolean resolveParticipant(Shard shard, String transferId, long userId, String state) {
+        return shard.jdbc().update("update shard_transfer_participants set state = ? " +
+                "where transfer_id = ? and user_id = ? and state = ?", state, transferId, userId, PREPARED) == 1;
+    }
+
+    private static void insertParticipant(Shard shard, String transferId, long userId, BigDecimal amount, String state) {
+        shard.jdbc().update("insert into shard_transfer_participants (transfer_id, user_id, amount, state) values (?, ?, ?, ?)",
+                transferId, userId, amount, state);
+    }
+
+    private Shard owner(long userId) {
+        return store.shard(directory.find(userId)
+                .orElseThrow(() -> new UserNotFoundException("User with id: " + userId + " not found"))
+                .shardId());
+    }
+}
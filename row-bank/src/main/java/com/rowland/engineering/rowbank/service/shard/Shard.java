@@ -0,0 +1,68 @@
+package com.rowland.engineering.rowbank.service.shard;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * One shard database. Every shard has the same schema: the accounts it owns, their
+ * transactions, and its side of cross-shard transfers.
+ */
+public class Shard {
+
+    private static final String[] SCHEMA = {
+            "create table if not exists users_table (" +
+                    "id bigint primary key, " +
+                    "username varchar(20) not null, " +
+                    "email varchar(255), " +
+                    "account_number varchar(10) not null, " +
+                    "first_name varchar(25), " +
+                    "last_name varchar(25), " +
+                    "balance decimal(19,2) not null, " +
+                    "opening_balance decimal(19,2))",
+            "create table if not exists transactions_table (" +
+                    "id bigint auto_increment primary key, " +
+                    "user_id bigint not null, " +
+                    "transaction_type varchar(10) not null, " +
+                    "amount decimal(19,2) not null, " +
+                    "description varchar(255), " +
+                    "reference varchar(64), " +
+                    "timestamp timestamp(6) not null)",
+            "create table if not exists shard_transfer_participants (" +
+                    "transfer_id varchar(36) not null, " +
+                    "user_id bigint not null, " +
+                    "amount decimal(19,2) not null, " +
+                    "state varchar(12) not null, " +
+                    "primary key (transfer_id, user_id))"
+    };
+
+    private final int id;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactions;
+
+    public Shard(int id, DataSource dataSource) {
+        this.id = id;
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.transactions = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    public void createSchema() {
+        for (String statement : SCHEMA) {
+            jdbc.execute(statement);
+        }
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    JdbcTemplate jdbc() {
+        return jdbc;
+    }
+
+    TransactionTemplate transactions() {
+        return transactions;
+    }
+}
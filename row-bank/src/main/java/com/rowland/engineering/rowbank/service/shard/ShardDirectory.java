@@ -0,0 +1,157 @@
+package com.rowland.engineering.rowbank.service.shard;
+
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Global, unsharded index of every account: its unique keys and the shard that
+ * currently holds it. The directory, not the hash ring, is authoritative for
+ * where an account lives, which is what lets accounts move while rebalancing.
+ * It also holds the coordinator log of cross-shard transfers.
+ */
+public class ShardDirectory {
+
+    public enum TransferState {
+        PREPARING, COMMITTED, ABORTED, COMPLETED
+    }
+
+    public record Entry(long userId, String username, String email, String accountNumber, int shardId, boolean moving) {
+    }
+
+    public record TransferLog(String transferId, long fromUserId, long toUserId, BigDecimal amount,
+                              String description, TransferState state) {
+    }
+
+    private static final String[] SCHEMA = {
+            "create table if not exists shard_directory (" +
+                    "user_id bigint auto_increment primary key, " +
+                    "username varchar(20) not null unique, " +
+                    "email varchar(255) unique, " +
+                    "account_number varchar(10) not null unique, " +
+                    "shard_id int not null, " +
+                    "moving boolean not null)",
+            "create table if not exists shard_transfer_log (" +
+                    "transfer_id varchar(36) primary key, " +
+                    "from_user_id bigint not null, " +
+                    "to_user_id bigint not null, " +
+                    "amount decimal(19,2) not null, " +
+                    "description varchar(255), " +
+                    "state varchar(12) not null, " +
+                    "updated_at timestamp not null)"
+    };
+
+    private static final String ENTRY_COLUMNS = "select user_id, username, email, account_number, shard_id, moving from shard_directory ";
+
+    private static final RowMapper<Entry> ENTRY_MAPPER = (rs, rowNum) -> new Entry(rs.getLong("user_id"),
+            rs.getString("username"), rs.getString("email"), rs.getString("account_number"),
+            rs.getInt("shard_id"), rs.getBoolean("moving"));
+
+    private static final RowMapper<TransferLog> TRANSFER_MAPPER = (rs, rowNum) -> new TransferLog(
+            rs.getString("transfer_id"), rs.getLong("from_user_id"), rs.getLong("to_user_id"),
+            rs.getBigDecimal("amount"), rs.getString("description"), TransferState.valueOf(rs.getString("state")));
+
+    private final JdbcTemplate jdbc;
+
+    public ShardDirectory(DataSource dataSource) {
+        this.jdbc = new JdbcTemplate(dataSource);
+    }
+
+    public void createSchema() {
+        for (String statement : SCHEMA) {
+            jdbc.execute(statement);
+        }
+    }
+
+    public Entry register(String username, String email, String accountNumber, int shardId) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbc.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "insert into shard_directory (username, email, account_number, shard_id, moving) values (?, ?, ?, ?, false)",
+                    Statement.RETURN_GENERATED_KEYS);
+            statement.setString(1, username);
+            statement.setString(2, email);
+            statement.setString(3, accountNumber);
+            statement.setInt(4, shardId);
+            return statement;
+        }, keys);
+        return new Entry(keys.getKey().longValue(), username, email, accountNumber, shardId, false);
+    }
+
+    public void remove(long userId) {
+        jdbc.update("delete from shard_directory where user_id = ?", userId);
+    }
+
+    public Optional<Entry> find(long userId) {
+        return single(ENTRY_COLUMNS + "where user_id = ?", userId);
+    }
+
+    public Optional<Entry> findByUsernameOrEmail(String usernameOrEmail) {
+        return single(ENTRY_COLUMNS + "where username = ? or email = ?", usernameOrEmail, usernameOrEmail);
+    }
+
+    public Optional<Entry> findByAccountNumber(String accountNumber) {
+        return single(ENTRY_COLUMNS + "where account_number = ?", accountNumber);
+    }
+
+    public void forEachEntry(Consumer<Entry> action) {
+        jdbc.query(ENTRY_COLUMNS + "order by user_id", rs -> {
+            action.accept(ENTRY_MAPPER.mapRow(rs, 0));
+        });
+    }
+
+    public void setMoving(long userId, boolean moving) {
+        jdbc.update("update shard_directory set moving = ? where user_id = ?", moving, userId);
+    }
+
+    public void moveTo(long userId, int shardId) {
+        jdbc.update("update shard_directory set shard_id = ?, moving = false where user_id = ?", shardId, userId);
+    }
+
+    public void logTransfer(String transferId, long fromUserId, long toUserId, BigDecimal amount, String description) {
+        jdbc.update("insert into shard_transfer_log (transfer_id, from_user_id, to_user_id, amount, description, state, updated_at) " +
+                        "values (?, ?, ?, ?, ?, ?, ?)",
+                transferId, fromUserId, toUserId, amount, description, TransferState.PREPARING.name(), Timestamp.from(Instant.now()));
+    }
+
+    /**
+     * Moves a transfer from one state to the next. Returns false when another actor,
+     * such as recovery, already moved it elsewhere.
+     */
+    public boolean transitionTransfer(String transferId, TransferState from, TransferState to) {
+        return jdbc.update("update shard_transfer_log set state = ?, updated_at = ? where transfer_id = ? and state = ?",
+                to.name(), Timestamp.from(Instant.now()), transferId, from.name()) == 1;
+    }
+
+    public Optional<TransferState> transferState(String transferId) {
+        List<String> states = jdbc.queryForList("select state from shard_transfer_log where transfer_id = ?",
+                String.class, transferId);
+        return states.stream().findFirst().map(TransferState::valueOf);
+    }
+
+    public List<TransferLog> findUnfinishedTransfers(Instant updatedBefore) {
+        return jdbc.query("select transfer_id, from_user_id, to_user_id, amount, description, state from shard_transfer_log " +
+                        "where state in ('PREPARING', 'COMMITTED') and updated_at < ?",
+                TRANSFER_MAPPER, Timestamp.from(updatedBefore));
+    }
+
+    private Optional<Entry> single(String sql, Object... args) {
+        try {
+            return Optional.ofNullable(jdbc.queryForObject(sql, ENTRY_MAPPER, args));
+        } catch (EmptyResultDataAccessException ex) {
+            return Optional.empty();
+        }
+    }
+}
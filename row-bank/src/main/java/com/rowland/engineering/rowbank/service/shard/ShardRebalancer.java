@@ -0,0 +1,129 @@
+package com.rowland.engineering.rowbank.service.shard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves accounts whose owner changed after the ring was resized. Each account is
+ * copied while its row on the old shard is locked, so deposits and transfers queue
+ * behind the move and then find the account on its new shard through the directory.
+ * Accounts with a cross-shard transfer in flight are left for the next pass.
+ */
+public class ShardRebalancer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    public record Result(int moved, int skipped) {
+    }
+
+    private final ShardDirectory directory;
+    private final ShardedAccountStore store;
+
+    public ShardRebalancer(ShardDirectory directory, ShardedAccountStore store) {
+        this.directory = directory;
+        this.store = store;
+    }
+
+    /**
+     * Brings a new, empty shard into the ring. New accounts are placed with the new
+     * ring straight away; existing ones follow on {@link #rebalance()}.
+     */
+    public void addShard(int shardId, DataSource dataSource) {
+        Shard shard = new Shard(shardId, dataSource);
+        shard.createSchema();
+        store.addShard(shard);
+        List<Integer> shardIds = new ArrayList<>(store.getRouter().getShardIds());
+        if (!shardIds.contains(shardId)) {
+            shardIds.add(shardId);
+        }
+        store.setRouter(new ShardRouter(shardIds));
+    }
+
+    public Result rebalance() {
+        ShardRouter router = store.getRouter();
+        List<ShardDirectory.Entry> misplaced = new ArrayList<>();
+        directory.forEachEntry(entry -> {
+            if (router.shardFor(entry.accountNumber()) != entry.shardId()) {
+                misplaced.add(entry);
+            }
+        });
+        int moved = 0;
+        for (ShardDirectory.Entry entry : misplaced) {
+            if (move(entry, router.shardFor(entry.accountNumber()))) {
+                moved++;
+            }
+        }
+        logger.info("Rebalanced shards {}: moved {} accounts, {} left for the next pass",
+                router.getShardIds(), moved, misplaced.size() - moved);
+        return new Result(moved, misplaced.size() - moved);
+    }
+
+    boolean move(ShardDirectory.Entry entry, int targetId) {
+        Shard source = store.shard(entry.shardId());
+        Shard target = store.shard(targetId);
+        long userId = entry.userId();
+        directory.setMoving(userId, true);
+        boolean moved = false;
+        try {
+            moved = Boolean.TRUE.equals(source.transactions().execute(status -> {
+                List<Map<String, Object>> account = source.jdbc().queryForList(
+                        "select * from users_table where id = ? for update", userId);
+                if (account.isEmpty()) {
+                    return false;
+                }
+                Integer inFlight = source.jdbc().queryForObject("select count(*) from shard_transfer_participants " +
+                        "where user_id = ? and state = 'PREPARED'", Integer.class, userId);
+                if (inFlight != null && inFlight > 0) {
+                    return false;
+                }
+                copy(source, target, userId, account.get(0));
+                // The directory flips while the old row is still locked, so anyone waiting on it re-resolves.
+                directory.moveTo(userId, targetId);
+                source.jdbc().update("delete from transactions_table where user_id = ?", userId);
+                source.jdbc().update("delete from shard_transfer_participants where user_id = ?", userId);
+                source.jdbc().update("delete from users_table where id = ?", userId);
+                return true;
+            }));
+            return moved;
+        } finally {
+            if (!moved) {
+                directory.setMoving(userId, false);
+            }
+        }
+    }
+
+    private static void copy(Shard source, Shard target, long userId, Map<String, Object> account) {
+        List<Map<String, Object>> transactions = source.jdbc().queryForList(
+                "select transaction_type, amount, description, reference, timestamp from transactions_table " +
+                        "where user_id = ? order by id", userId);
+        List<Map<String, Object>> participants = source.jdbc().queryForList(
+                "select transfer_id, amount, state from shard_transfer_participants where user_id = ?", userId);
+        target.transactions().execute(status -> {
+            // Leftovers from an earlier attempt that failed after copying.
+            target.jdbc().update("delete from transactions_table where user_id = ?", userId);
+            target.jdbc().update("delete from shard_transfer_participants where user_id = ?", userId);
+            target.jdbc().update("delete from users_table where id = ?", userId);
+            target.jdbc().update("insert into users_table " +
+                            "(id, username, email, account_number, first_name, last_name, balance, opening_balance) " +
+                            "values (?, ?, ?, ?, ?, ?, ?, ?)",
+                    userId, account.get("username"), account.get("email"), account.get("account_number"),
+                    account.get("first_name"), account.get("last_name"), (BigDecimal) account.get("balance"),
+                    (BigDecimal) account.get("opening_balance"));
+            target.jdbc().batchUpdate("insert into transactions_table " +
+                            "(user_id, transaction_type, amount, description, reference, timestamp) values (?, ?, ?, ?, ?, ?)",
+                    transactions.stream().map(row -> new Object[]{userId, row.get("transaction_type"), row.get("amount"),
+                            row.get("description"), row.get("reference"), row.get("timestamp")}).toList());
+            target.jdbc().batchUpdate("insert into shard_transfer_participants (transfer_id, user_id, amount, state) " +
+                            "values (?, ?, ?, ?)",
+                    participants.stream().map(row -> new Object[]{row.get("transfer_id"), userId, row.get("amount"),
+                            row.get("state")}).toList());
+            return null;
+        });
+    }
+}
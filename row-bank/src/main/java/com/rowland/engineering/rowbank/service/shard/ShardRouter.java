@@ -0,0 +1,43 @@
+package com.rowland.engineering.rowbank.service.shard;
+
+import com.rowland.engineering.rowbank.utils.Hashing;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent-hash ring placing account numbers on shards. Each shard owns many
+ * virtual points on the ring, so adding a shard moves only about 1/(N+1) of the
+ * accounts, all of them onto the new shard.
+ */
+public class ShardRouter {
+
+    private static final int VIRTUAL_NODES = 128;
+
+    private final NavigableMap<Long, Integer> ring = new TreeMap<>();
+    private final List<Integer> shardIds;
+
+    public ShardRouter(Collection<Integer> shardIds) {
+        if (shardIds.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shardIds = List.copyOf(shardIds);
+        for (int shardId : shardIds) {
+            for (int node = 0; node < VIRTUAL_NODES; node++) {
+                ring.put(Hashing.hash("shard-" + shardId + "#" + node), shardId);
+            }
+        }
+    }
+
+    public int shardFor(String accountNumber) {
+        Map.Entry<Long, Integer> owner = ring.ceilingEntry(Hashing.hash(accountNumber));
+        return (owner == null ? ring.firstEntry() : owner).getValue();
+    }
+
+    public List<Integer> getShardIds() {
+        return shardIds;
+    }
+}
@@ -0,0 +1,229 @@
+package com.rowland.engineering.rowbank.service.shard;
+
+import com.rowland.engineering.rowbank.exception.AppException;
+import com.rowland.engineering.rowbank.exception.BadRequestException;
+import com.rowland.engineering.rowbank.exception.TooManyRequestsException;
+import com.rowland.engineering.rowbank.exception.UserNotFoundException;
+import com.rowland.engineering.rowbank.model.TransactionType;
+import com.rowland.engineering.rowbank.service.ledger.LedgerEngine;
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Account storage spread over several shard databases. An account and all of its
+ * transactions live on one shard, chosen by hashing the account number when the
+ * account is opened and recorded in the {@link ShardDirectory}. Work on one
+ * account is a local transaction on its shard; transfers between shards go
+ * through the {@link CrossShardTransferCoordinator}. Amounts follow the same rules
+ * as the {@link LedgerEngine}.
+ * <p>
+ * Shard tables keep the names and columns of the JPA mapping, limited to what the
+ * store reads and writes, so a shard can be seeded from an existing database. Only
+ * deployments that set {@code app.sharding.shard-urls} create a store.
+ */
+public final class ShardedAccountStore {
+
+    public record ShardTransaction(TransactionType type, BigDecimal amount, String description, String reference) {
+    }
+
+    private final ShardDirectory directory;
+    private final Map<Integer, Shard> shards = new ConcurrentHashMap<>();
+    private final CrossShardTransferCoordinator coordinator;
+    private volatile ShardRouter router;
+
+    public ShardedAccountStore(ShardDirectory directory, List<Shard> shards) {
+        this.directory = directory;
+        shards.forEach(shard -> this.shards.put(shard.getId(), shard));
+        this.router = new ShardRouter(this.shards.keySet());
+        this.coordinator = new CrossShardTransferCoordinator(directory, this);
+    }
+
+    public ShardDirectory.Entry openAccount(String username, String email, String accountNumber,
+                                            String firstName, String lastName, BigDecimal openingBalance) {
+        ShardDirectory.Entry entry = directory.register(username, email, accountNumber, router.shardFor(accountNumber));
+        try {
+            BigDecimal balance = openingBalance == null ? BigDecimal.ZERO : openingBalance;
+            shard(entry.shardId()).jdbc().update("insert into users_table " +
+                            "(id, username, email, account_number, first_name, last_name, balance, opening_balance) " +
+                            "values (?, ?, ?, ?, ?, ?, ?, ?)",
+                    entry.userId(), username, email, accountNumber, firstName, lastName, balance, balance);
+            return entry;
+        } catch (RuntimeException ex) {
+            directory.remove(entry.userId());
+            throw ex;
+        }
+    }
+
+    public Optional<ShardDirectory.Entry> findByUsernameOrEmail(String usernameOrEmail) {
+        return directory.findByUsernameOrEmail(usernameOrEmail);
+    }
+
+    public Optional<ShardDirectory.Entry> findByAccountNumber(String accountNumber) {
+        return directory.findByAccountNumber(accountNumber);
+    }
+
+    public BigDecimal balanceOf(long userId) {
+        return onOwner(userId, shard -> {
+            try {
+                return shard.jdbc().queryForObject("select balance from users_table where id = ?", BigDecimal.class, userId);
+            } catch (EmptyResultDataAccessException ex) {
+                throw new AccountRelocatedException();
+            }
+        });
+    }
+
+    public List<ShardTransaction> transactionsOf(long userId) {
+        return onOwner(userId, shard -> {
+            requireAccount(shard, userId);
+            return shard.jdbc().query("select transaction_type, amount, description, reference from transactions_table " +
+                            "where user_id = ? order by id",
+                    (rs, rowNum) -> new ShardTransaction(TransactionType.valueOf(rs.getString("transaction_type")),
+                            rs.getBigDecimal("amount"), rs.getString("description"), rs.getString("reference")),
+                    userId);
+        });
+    }
+
+    public void deposit(long userId, BigDecimal amount, String description, String reference) {
+        LedgerEngine.validateAmount(amount);
+        onOwner(userId, shard -> shard.transactions().execute(status -> {
+            if (shard.jdbc().update("update users_table set balance = balance + ? where id = ?", amount, userId) == 0) {
+                throw new AccountRelocatedException();
+            }
+            insertTransaction(shard, userId, TransactionType.CREDIT, amount, description, reference);
+            return null;
+        }));
+    }
+
+    /**
+     * Moves money between two accounts. When both live on the same shard this is a
+     * single local transaction; otherwise it runs the two-phase protocol described
+     * on {@link CrossShardTransferCoordinator}.
+     */
+    public String transfer(long fromUserId, long toUserId, BigDecimal amount, String description) {
+        LedgerEngine.validateAmount(amount);
+        if (fromUserId == toUserId) {
+            throw new BadRequestException("Cannot transfer to the same account");
+        }
+        ShardDirectory.Entry from = resolve(fromUserId);
+        ShardDirectory.Entry to = resolve(toUserId);
+        if (from.shardId() != to.shardId()) {
+            return coordinator.transfer(from, to, amount, description);
+        }
+        String reference = UUID.randomUUID().toString();
+        Shard shard = shard(from.shardId());
+        try {
+            shard.transactions().execute(status -> {
+                // Lock both rows in id order so opposing transfers cannot deadlock.
+                long first = Math.min(fromUserId, toUserId);
+                long second = Math.max(fromUserId, toUserId);
+                lockAccount(shard, first);
+                lockAccount(shard, second);
+                debit(shard, fromUserId, amount);
+                shard.jdbc().update("update users_table set balance = balance + ? where id = ?", amount, toUserId);
+                insertTransaction(shard, fromUserId, TransactionType.DEBIT, amount, description, reference);
+                insertTransaction(shard, toUserId, TransactionType.CREDIT, amount, description, reference);
+                return null;
+            });
+        } catch (AccountRelocatedException ex) {
+            // One of the accounts moved between lookup and lock; the directory now knows where.
+            return transfer(fromUserId, toUserId, amount, description);
+        }
+        return reference;
+    }
+
+    void setRouter(ShardRouter router) {
+        this.router = router;
+    }
+
+    ShardRouter getRouter() {
+        return router;
+    }
+
+    void addShard(Shard shard) {
+        shards.put(shard.getId(), shard);
+    }
+
+    public CrossShardTransferCoordinator getCoordinator() {
+        return coordinator;
+    }
+
+    Shard shard(int shardId) {
+        Shard shard = shards.get(shardId);
+        if (shard == null) {
+            throw new AppException("Unknown shard " + shardId);
+        }
+        return shard;
+    }
+
+    ShardDirectory.Entry resolve(long userId) {
+        ShardDirectory.Entry entry = directory.find(userId)
+                .orElseThrow(() -> new UserNotFoundException("User with id: " + userId + " not found"));
+        if (entry.moving()) {
+            throw new TooManyRequestsException("Account is being moved between shards, retry shortly", 1);
+        }
+        return entry;
+    }
+
+    /**
+     * Runs work on the shard that owns the account. If the account moved away after
+     * the directory lookup the work finds no row, signals it, and is retried once
+     * against the new owner.
+     */
+    <T> T onOwner(long userId, Function<Shard, T> work) {
+        try {
+            return work.apply(shard(resolve(userId).shardId()));
+        } catch (AccountRelocatedException ex) {
+            return work.apply(shard(resolve(userId).shardId()));
+        }
+    }
+
+    static void lockAccount(Shard shard, long userId) {
+        List<Long> locked = shard.jdbc().queryForList("select id from users_table where id = ? for update", Long.class, userId);
+        if (locked.isEmpty()) {
+            throw new AccountRelocatedException();
+        }
+    }
+
+    static void debit(Shard shard, long userId, BigDecimal amount) {
+        if (shard.jdbc().update("update users_table set balance = balance - ? where id = ? and balance >= ?",
+                amount, userId, amount) == 0) {
+            requireAccount(shard, userId);
+            throw new BadRequestException("Insufficient funds");
+        }
+    }
+
+    static void insertTransaction(Shard shard, long userId, TransactionType type, BigDecimal amount,
+                                  String description, String reference) {
+        shard.jdbc().update("insert into transactions_table (user_id, transaction_type, amount, description, reference, timestamp) " +
+                        "values (?, ?, ?, ?, ?, ?)",
+                userId, type.name(), amount, description, reference, Timestamp.from(Instant.now()));
+    }
+
+    private static void requireAccount(Shard shard, long userId) {
+        Integer count = shard.jdbc().queryForObject("select count(*) from users_table where id = ?", Integer.class, userId);
+        if (count == null || count == 0) {
+            throw new AccountRelocatedException();
+        }
+    }
+
+    /**
+     * The account's row is no longer on the shard the directory pointed at, because
+     * a rebalance moved it in between.
+     */
+    static class AccountRelocatedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        AccountRelocatedException() {
+            super("Account moved to another shard", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.rowland.engineering.rowbank.service.statement;
+
+import com.rowland.engineering.rowbank.dto.StatementAccount;
+import com.rowland.engineering.rowbank.dto.StatementLine;
+import com.rowland.engineering.rowbank.model.Transaction;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+/**
+ * RFC 4180 CSV: a few summary rows, one row per transaction with its running
+ * balance, and the closing balance last.
+ */
+class CsvStatementWriter implements StatementWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer writer;
+
+    CsvStatementWriter(OutputStream output) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    @Override
+    public void header(StatementAccount account, LocalDateTime from, LocalDateTime to, BigDecimal openingBalance)
+            throws IOException {
+        row("Account number", text(account.accountNumber()));
+        row("Account holder", text(account.firstName() + " " + account.lastName()));
+        row("From", text(from.format(Transaction.TIMESTAMP_FORMAT)));
+        row("To", text(to.format(Transaction.TIMESTAMP_FORMAT)));
+        row("Opening balance", openingBalance.toPlainString());
+        writer.write("\r\n");
+        writer.write("Date,Type,Description,Reference,Amount,Balance\r\n");
+    }
+
+    @Override
+    public void line(StatementLine line, BigDecimal balance) throws IOException {
+        writer.write(text(line.timestamp().format(Transaction.TIMESTAMP_FORMAT)));
+        writer.write(',');
+        writer.write(line.transactionType().name());
+        writer.write(',');
+        writer.write(text(line.description()));
+        writer.write(',');
+        writer.write(text(line.reference()));
+        writer.write(',');
+        writer.write(line.signedAmount().toPlainString());
+        writer.write(',');
+        writer.write(balance.toPlainString());
+        writer.write("\r\n");
+    }
+
+    @Override
+    public void footer(BigDecimal closingBalance, long lines) throws IOException {
+        writer.write("\r\n");
+        row("Transactions", Long.toString(lines));
+        row("Closing balance", closingBalance.toPlainString());
+        writer.flush();
+    }
+
+    private void row(String label, String value) throws IOException {
+        writer.write(label);
+        writer.write(',');
+        writer.write(value);
+        writer.write("\r\n");
+    }
+
+    // Quotes where needed, and defuses values a spreadsheet would run as a formula.
+    private static String text(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        char first = value.charAt(0);
+        if (first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r') {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
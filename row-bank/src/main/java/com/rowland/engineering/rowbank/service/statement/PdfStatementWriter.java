@@ -0,0 +1,127 @@
+package com.rowland.engineering.rowbank.service.statement;
+
+import com.rowland.engineering.rowbank.dto.StatementAccount;
+import com.rowland.engineering.rowbank.dto.StatementLine;
+import com.rowland.engineering.rowbank.model.Transaction;
+import com.rowland.engineering.rowbank.utils.StreamingPdfWriter;
+import com.rowland.engineering.rowbank.utils.StreamingPdfWriter.Font;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A4 statement with a fixed column layout. Pages are flushed as they fill, and the
+ * column headings and the balance brought forward repeat on each page.
+ */
+class PdfStatementWriter implements StatementWriter {
+
+    private static final float MARGIN = 40;
+    private static final float FONT_SIZE = 8;
+    private static final float LINE_HEIGHT = 12;
+    private static final float TOP = StreamingPdfWriter.PAGE_HEIGHT - MARGIN;
+    private static final float BOTTOM = MARGIN + LINE_HEIGHT;
+    private static final float RIGHT = StreamingPdfWriter.PAGE_WIDTH - MARGIN;
+
+    private static final float DATE_X = MARGIN;
+    private static final float TYPE_X = 135;
+    private static final float DESCRIPTION_X = 180;
+    private static final float REFERENCE_X = 330;
+    private static final float AMOUNT_RIGHT = 490;
+    private static final int DESCRIPTION_CHARS = 32;
+    private static final int REFERENCE_CHARS = 28;
+
+    private final StreamingPdfWriter pdf;
+    private float y;
+    private int page;
+
+    PdfStatementWriter(OutputStream output) throws IOException {
+        this.pdf = new StreamingPdfWriter(output);
+    }
+
+    @Override
+    public void header(StatementAccount account, LocalDateTime from, LocalDateTime to, BigDecimal openingBalance)
+            throws IOException {
+        pdf.newPage();
+        page = 1;
+        y = TOP;
+        pdf.text(MARGIN, y, Font.BOLD, 14, "Account statement");
+        y -= 22;
+        pdf.text(MARGIN, y, Font.REGULAR, 10, account.firstName() + " " + account.lastName()
+                + "    Account " + account.accountNumber());
+        y -= 14;
+        pdf.text(MARGIN, y, Font.REGULAR, 10, from.format(Transaction.TIMESTAMP_FORMAT)
+                + "  to  " + to.format(Transaction.TIMESTAMP_FORMAT));
+        y -= 20;
+        columnHeadings();
+        balanceRow("Opening balance", openingBalance);
+    }
+
+    @Override
+    public void line(StatementLine line, BigDecimal balance) throws IOException {
+        if (y < BOTTOM) {
+            nextPage(balance.subtract(line.signedAmount()));
+        }
+        pdf.text(DATE_X, y, Font.REGULAR, FONT_SIZE, line.timestamp().format(Transaction.TIMESTAMP_FORMAT));
+        pdf.text(TYPE_X, y, Font.REGULAR, FONT_SIZE, line.transactionType().name());
+        pdf.text(DESCRIPTION_X, y, Font.REGULAR, FONT_SIZE, truncate(line.description(), DESCRIPTION_CHARS));
+        pdf.text(REFERENCE_X, y, Font.REGULAR, FONT_SIZE, truncate(line.reference(), REFERENCE_CHARS));
+        rightAligned(AMOUNT_RIGHT, Font.REGULAR, line.signedAmount().toPlainString());
+        rightAligned(RIGHT, Font.REGULAR, balance.toPlainString());
+        y -= LINE_HEIGHT;
+    }
+
+    @Override
+    public void footer(BigDecimal closingBalance, long lines) throws IOException {
+        if (y < BOTTOM + LINE_HEIGHT) {
+            nextPage(closingBalance);
+        }
+        pdf.line(MARGIN, y + LINE_HEIGHT - 3, RIGHT, y + LINE_HEIGHT - 3);
+        pdf.text(DATE_X, y, Font.REGULAR, FONT_SIZE, lines + " transactions");
+        balanceRow("Closing balance", closingBalance);
+        pageNumber();
+        pdf.finish();
+    }
+
+    private void nextPage(BigDecimal broughtForward) throws IOException {
+        pageNumber();
+        pdf.newPage();
+        page++;
+        y = TOP;
+        columnHeadings();
+        balanceRow("Brought forward", broughtForward);
+    }
+
+    private void pageNumber() throws IOException {
+        pdf.text(MARGIN, MARGIN - 16, Font.REGULAR, 7, "Page " + page);
+    }
+
+    private void columnHeadings() throws IOException {
+        pdf.text(DATE_X, y, Font.BOLD, FONT_SIZE, "Date");
+        pdf.text(TYPE_X, y, Font.BOLD, FONT_SIZE, "Type");
+        pdf.text(DESCRIPTION_X, y, Font.BOLD, FONT_SIZE, "Description");
+        pdf.text(REFERENCE_X, y, Font.BOLD, FONT_SIZE, "Reference");
+        rightAligned(AMOUNT_RIGHT, Font.BOLD, "Amount");
+        rightAligned(RIGHT, Font.BOLD, "Balance");
+        pdf.line(MARGIN, y - 4, RIGHT, y - 4);
+        y -= LINE_HEIGHT + 2;
+    }
+
+    private void balanceRow(String label, BigDecimal balance) throws IOException {
+        pdf.text(DESCRIPTION_X, y, Font.BOLD, FONT_SIZE, label);
+        rightAligned(RIGHT, Font.BOLD, balance.toPlainString());
+        y -= LINE_HEIGHT;
+    }
+
+    private void rightAligned(float right, Font font, String text) throws IOException {
+        pdf.text(right - StreamingPdfWriter.width(text, FONT_SIZE), y, font, FONT_SIZE, text);
+    }
+
+    private static String truncate(String value, int maxChars) {
+        if (value == null) {
+            return "";
+        }
+        return value.length() <= maxChars ? value : value.substring(0, maxChars - 3) + "...";
+    }
+}
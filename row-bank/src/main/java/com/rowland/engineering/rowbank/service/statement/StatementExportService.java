@@ -0,0 +1,184 @@
+package com.rowland.engineering.rowbank.service.statement;
+
+import com.rowland.engineering.rowbank.dto.StatementExport;
+import com.rowland.engineering.rowbank.exception.TooManyRequestsException;
+import com.rowland.engineering.rowbank.utils.BoundedCache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs large statement exports in the background. Each export streams into a file
+ * under {@code app.statements.export-dir}, renamed into place only once complete,
+ * and is kept for {@code app.statements.export-ttl-ms}. Export status lives in
+ * memory, so it is only known to the instance that ran the export.
+ */
+@Service
+public class StatementExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatementExportService.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final StatementService statementService;
+    private final Path directory;
+    private final long ttlMs;
+    private final ThreadPoolExecutor executor;
+    private final BoundedCache<String, Export> exports;
+    private final MeterRegistry meterRegistry;
+
+    public StatementExportService(StatementService statementService,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.statements.export-dir:statement-exports}") Path directory,
+                                  @Value("${app.statements.export-threads:2}") int threads,
+                                  @Value("${app.statements.export-queue-capacity:32}") int queueCapacity,
+                                  @Value("${app.statements.export-ttl-ms:3600000}") long ttlMs) throws IOException {
+        this.statementService = statementService;
+        this.meterRegistry = meterRegistry;
+        this.directory = Files.createDirectories(directory);
+        this.ttlMs = ttlMs;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), task -> {
+                    Thread thread = new Thread(task, "statement-export-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.exports = new BoundedCache<>(10_000, ttlMs);
+        Gauge.builder("statement.exports.queued", executor, pool -> pool.getQueue().size())
+                .description("Statement exports waiting for an export thread")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public StatementExport submit(Long userId, LocalDateTime from, LocalDateTime to, StatementFormat format) {
+        Export export = new Export(UUID.randomUUID().toString(), userId, format);
+        exports.put(export.id, export);
+        try {
+            executor.execute(() -> run(export, from, to));
+        } catch (RejectedExecutionException ex) {
+            exports.invalidate(export.id);
+            throw new TooManyRequestsException("Too many statement exports in progress, retry shortly", 30);
+        }
+        return export.toStatus();
+    }
+
+    public Optional<StatementExport> status(Long userId, String exportId) {
+        return find(userId, exportId).map(Export::toStatus);
+    }
+
+    /**
+     * The finished file, or empty while the export is still running, after it failed
+     * or once it has expired.
+     */
+    public Optional<Path> file(Long userId, String exportId) {
+        return find(userId, exportId)
+                .filter(export -> export.state == StatementExport.State.COMPLETED)
+                .map(export -> export.file)
+                .filter(Files::isReadable);
+    }
+
+    @Scheduled(fixedDelayString = "${app.statements.purge-interval-ms:600000}",
+            initialDelayString = "${app.statements.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        Instant cutoff = Instant.now().minusMillis(ttlMs);
+        int purged = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff) && Files.deleteIfExists(file)) {
+                    purged++;
+                }
+            }
+        } catch (IOException ex) {
+            logger.warn("Could not purge statement exports in {}", directory, ex);
+        }
+        if (purged > 0) {
+            logger.info("Purged {} expired statement exports", purged);
+        }
+    }
+
+    private Optional<Export> find(Long userId, String exportId) {
+        Export export = exports.get(exportId);
+        return export != null && export.userId.equals(userId) ? Optional.of(export) : Optional.empty();
+    }
+
+    private void run(Export export, LocalDateTime from, LocalDateTime to) {
+        long start = System.nanoTime();
+        export.state = StatementExport.State.RUNNING;
+        Path partial = directory.resolve(export.id + ".part");
+        Path file = directory.resolve(export.id + "." + export.format.getExtension());
+        String outcome = "success";
+        try {
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(partial), BUFFER_SIZE)) {
+                statementService.writeStatement(export.userId, from, to, export.format, output);
+            }
+            Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE);
+            export.file = file;
+            export.sizeBytes = Files.size(file);
+            export.state = StatementExport.State.COMPLETED;
+        } catch (IOException | RuntimeException ex) {
+            outcome = "error";
+            export.message = ex.getMessage();
+            export.state = StatementExport.State.FAILED;
+            logger.warn("Statement export {} for user {} failed", export.id, export.userId, ex);
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException ignored) {
+                // Swept up by the purge.
+            }
+        } finally {
+            Timer.builder("statement.export.duration")
+                    .description("Time to render a background statement export")
+                    .tags("format", export.format.name(), "outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static final class Export {
+        private final String id;
+        private final Long userId;
+        private final StatementFormat format;
+        private volatile StatementExport.State state = StatementExport.State.QUEUED;
+        private volatile Path file;
+        private volatile Long sizeBytes;
+        private volatile String message;
+
+        private Export(String id, Long userId, StatementFormat format) {
+            this.id = id;
+            this.userId = userId;
+            this.format = format;
+        }
+
+        private StatementExport toStatus() {
+            return new StatementExport(id, state, format, sizeBytes, message);
+        }
+    }
+}
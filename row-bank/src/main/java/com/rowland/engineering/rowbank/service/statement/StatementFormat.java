@@ -0,0 +1,29 @@
+package com.rowland.engineering.rowbank.service.statement;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public enum StatementFormat {
+    CSV("text/csv", "csv"),
+    PDF("application/pdf", "pdf");
+
+    private final String mediaType;
+    private final String extension;
+
+    StatementFormat(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    StatementWriter open(OutputStream output) throws IOException {
+        return this == CSV ? new CsvStatementWriter(output) : new PdfStatementWriter(output);
+    }
+}
@@ -0,0 +1,69 @@
+package com.rowland.engineering.rowbank.service.statement;
+
+import com.rowland.engineering.rowbank.dto.StatementAccount;
+import com.rowland.engineering.rowbank.dto.StatementLine;
+import com.rowland.engineering.rowbank.exception.BadRequestException;
+import com.rowland.engineering.rowbank.exception.UserNotFoundException;
+import com.rowland.engineering.rowbank.repository.TransactionRepository;
+import com.rowland.engineering.rowbank.repository.UserRepository;
+import com.rowland.engineering.rowbank.service.ledger.LedgerWriter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+/**
+ * Renders account statements straight from a streaming cursor, oldest first, with a
+ * running balance. The opening balance is the current balance minus everything
+ * booked since the start of the period; both are read in the same read-only
+ * transaction as the rows, so the statement is one consistent snapshot.
+ */
+@Service
+@RequiredArgsConstructor
+public class StatementService {
+
+    // Lower bound of the MySQL DATETIME range, used when the period has no start.
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1000, 1, 1, 0, 0);
+
+    private final UserRepository userRepository;
+    private final TransactionRepository transactionRepository;
+    private final LedgerWriter ledgerWriter;
+
+    @Transactional(readOnly = true)
+    public void writeStatement(Long userId, LocalDateTime from, LocalDateTime to, StatementFormat format,
+                               OutputStream output) throws IOException {
+        LocalDateTime start = from == null ? EARLIEST : from;
+        LocalDateTime end = to == null ? LocalDateTime.now() : to;
+        validatePeriod(start, end);
+        StatementAccount account = userRepository.findStatementAccount(userId)
+                .orElseThrow(() -> new UserNotFoundException("User with id: " + userId + " not found"));
+        // Read before the cursor opens; a streaming MySQL result set holds the connection until it is closed.
+        BigDecimal opening = ledgerWriter.loadBalance(userId)
+                .subtract(transactionRepository.sumSignedSince(userId, start));
+
+        StatementWriter writer = format.open(output);
+        writer.header(account, start, end, opening);
+        BigDecimal balance = opening;
+        long lines = 0;
+        try (Stream<StatementLine> rows = transactionRepository.streamStatement(userId, start, end)) {
+            for (StatementLine line : (Iterable<StatementLine>) rows::iterator) {
+                balance = balance.add(line.signedAmount());
+                writer.line(line, balance);
+                lines++;
+            }
+        }
+        writer.footer(balance, lines);
+    }
+
+    // Also called before a response starts streaming, while a 400 can still be sent.
+    public static void validatePeriod(LocalDateTime from, LocalDateTime to) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new BadRequestException("Statement period must end after it starts");
+        }
+    }
+}
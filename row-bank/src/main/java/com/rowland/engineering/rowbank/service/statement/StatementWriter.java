@@ -0,0 +1,21 @@
+package com.rowland.engineering.rowbank.service.statement;
+
+import com.rowland.engineering.rowbank.dto.StatementAccount;
+import com.rowland.engineering.rowbank.dto.StatementLine;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Renders a statement as its rows arrive. Implementations keep no more than a
+ * bounded window of output in memory.
+ */
+interface StatementWriter {
+
+    void header(StatementAccount account, LocalDateTime from, LocalDateTime to, BigDecimal openingBalance) throws IOException;
+
+    void line(StatementLine line, BigDecimal balance) throws IOException;
+
+    void footer(BigDecimal closingBalance, long lines) throws IOException;
+}
@@ -0,0 +1,214 @@
+package com.rowland.engineering.rowbank.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Size-bounded, expiring LRU cache split into independently locked segments.
+ * Entries expire at an absolute wall-clock time, either given on put or derived
+ * from the default time-to-live.
+ */
+public class BoundedCache<K, V> {
+
+    private final Segment<K, V>[] segments;
+    private final long defaultTtlMillis;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BoundedCache(int maximumSize) {
+        this(maximumSize, Long.MAX_VALUE);
+    }
+
+    // Generic arrays cannot be created directly; every element is a Segment<K, V>.
+    @SuppressWarnings("unchecked")
+    public BoundedCache(int maximumSize, long defaultTtlMillis) {
+        int segmentCount = Math.max(1, Math.min(16, Integer.highestOneBit(Math.max(1, maximumSize / 64))));
+        int segmentCapacity = Math.max(1, maximumSize / segmentCount);
+        this.segments = (Segment<K, V>[]) new Segment<?, ?>[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment<>(segmentCapacity, evictions);
+        }
+        this.defaultTtlMillis = defaultTtlMillis;
+    }
+
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        long now = System.currentTimeMillis();
+        segment.lock.lock();
+        try {
+            V value = segment.getLive(key, now);
+            (value == null ? misses : hits).increment();
+            return value;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the cached value or stores the one produced by the loader. The loader
+     * runs under the segment lock and must be cheap and non-blocking.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Segment<K, V> segment = segmentFor(key);
+        long now = System.currentTimeMillis();
+        segment.lock.lock();
+        try {
+            V value = segment.getLive(key, now);
+            if (value != null) {
+                hits.increment();
+                return value;
+            }
+            misses.increment();
+            value = loader.apply(key);
+            segment.map.put(key, new Entry<>(value, expiryFrom(now)));
+            puts.increment();
+            return value;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public void put(K key, V value) {
+        put(key, value, expiryFrom(System.currentTimeMillis()));
+    }
+
+    public void put(K key, V value, long expiresAtMillis) {
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            segment.map.put(key, new Entry<>(value, expiresAtMillis));
+            puts.increment();
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public void invalidate(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            segment.map.remove(key);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.map.clear();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.map.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    public void bindTo(MeterRegistry registry, String cacheName) {
+        new Metrics(this, cacheName).bindTo(registry);
+    }
+
+    private long expiryFrom(long now) {
+        return defaultTtlMillis == Long.MAX_VALUE ? Long.MAX_VALUE : now + defaultTtlMillis;
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    private record Entry<V>(V value, long expiresAtMillis) {
+    }
+
+    private static final class Segment<K, V> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<K, Entry<V>> map;
+        private final LongAdder evictions;
+
+        private Segment(int capacity, LongAdder evictions) {
+            this.evictions = evictions;
+            this.map = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        private V getLive(K key, long now) {
+            Entry<V> entry = map.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAtMillis() <= now) {
+                map.remove(key);
+                evictions.increment();
+                return null;
+            }
+            return entry.value();
+        }
+    }
+
+    private static final class Metrics extends CacheMeterBinder<BoundedCache<?, ?>> {
+
+        private Metrics(BoundedCache<?, ?> cache, String cacheName) {
+            super(cache, cacheName, Tags.empty());
+        }
+
+        @Override
+        protected Long size() {
+            return getCache() == null ? null : getCache().size();
+        }
+
+        @Override
+        protected long hitCount() {
+            return getCache() == null ? 0 : getCache().hits.sum();
+        }
+
+        @Override
+        protected Long missCount() {
+            return getCache() == null ? null : getCache().misses.sum();
+        }
+
+        @Override
+        protected Long evictionCount() {
+            return getCache() == null ? null : getCache().evictions.sum();
+        }
+
+        @Override
+        protected long putCount() {
+            return getCache() == null ? 0 : getCache().puts.sum();
+        }
+
+        @Override
+        protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.rowland.engineering.rowbank.utils;
+
+/**
+ * Fast, stable, non-cryptographic 64-bit hashing for placing keys, such as Bloom
+ * filter bits and consistent-hash ring points. Values never change between runs,
+ * so they may be relied on across restarts.
+ */
+public final class Hashing {
+
+    private Hashing() {
+    }
+
+    // 64-bit FNV-1a over the UTF-16 code units, then a finalizer to spread the bits.
+    public static long hash(String key) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    // The murmur3 64-bit finalizer.
+    public static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+}
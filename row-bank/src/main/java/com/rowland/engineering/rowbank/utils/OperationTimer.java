@@ -0,0 +1,44 @@
+package com.rowland.engineering.rowbank.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Success and error timers for one operation, registered up front under the shared
+ * {@code operation.latency} name so a single query breaks request time down by
+ * {@code layer} and {@code operation}. Callers take {@link System#nanoTime()} and
+ * report the outcome, which records without allocating.
+ */
+public final class OperationTimer {
+
+    public static final String METER_NAME = "operation.latency";
+
+    private final Timer success;
+    private final Timer error;
+
+    private OperationTimer(Timer success, Timer error) {
+        this.success = success;
+        this.error = error;
+    }
+
+    public static OperationTimer register(MeterRegistry registry, String layer, String operation) {
+        return new OperationTimer(timer(registry, layer, operation, "success"), timer(registry, layer, operation, "error"));
+    }
+
+    public void success(long startNanos) {
+        success.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void error(long startNanos) {
+        error.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer timer(MeterRegistry registry, String layer, String operation, String outcome) {
+        return Timer.builder(METER_NAME)
+                .tags("layer", layer, "operation", operation, "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
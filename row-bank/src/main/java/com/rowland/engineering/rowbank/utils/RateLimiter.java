@@ -0,0 +1,52 @@
+package com.rowland.engineering.rowbank.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keyed token-bucket limiter using the generic cell rate algorithm: each key holds
+ * only the theoretical arrival time of its next permit, advanced with a CAS loop.
+ * Keys live in a {@link BoundedCache} and drop out once their bucket is full again.
+ */
+public class RateLimiter {
+
+    private final BoundedCache<String, AtomicLong> buckets;
+    private final long emissionIntervalMillis;
+    private final long toleranceMillis;
+
+    public RateLimiter(int permitsPerMinute, int burst, int maxKeys) {
+        if (permitsPerMinute < 1 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.emissionIntervalMillis = Math.max(1, 60_000L / permitsPerMinute);
+        this.toleranceMillis = emissionIntervalMillis * (burst - 1);
+        this.buckets = new BoundedCache<>(maxKeys, emissionIntervalMillis * burst);
+    }
+
+    /**
+     * Takes one permit for the key. Returns 0 when it was granted, otherwise the
+     * number of milliseconds until the next permit becomes available.
+     */
+    public long tryAcquire(String key) {
+        AtomicLong arrival = buckets.get(key, k -> new AtomicLong());
+        long now = System.currentTimeMillis();
+        while (true) {
+            long theoreticalArrival = arrival.get();
+            long allowedAt = theoreticalArrival - toleranceMillis;
+            if (allowedAt > now) {
+                return allowedAt - now;
+            }
+            long next = Math.max(theoreticalArrival, now) + emissionIntervalMillis;
+            if (arrival.compareAndSet(theoreticalArrival, next)) {
+                // The bucket is full again, and the key can be forgotten, once next has passed.
+                buckets.put(key, arrival, next);
+                return 0;
+            }
+        }
+    }
+
+    public void bindTo(MeterRegistry registry, String name) {
+        buckets.bindTo(registry, name);
+    }
+}
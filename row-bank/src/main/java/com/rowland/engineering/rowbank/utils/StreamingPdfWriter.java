@@ -0,0 +1,179 @@
+package com.rowland.engineering.rowbank.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a text-only PDF one page at a time. Each page's content is written out as
+ * soon as the next page starts, deflated, so memory holds a single page plus one
+ * offset per PDF object, whatever the document length. Text uses the standard
+ * Helvetica fonts, which every reader has, so nothing is embedded.
+ */
+public class StreamingPdfWriter {
+
+    public static final float PAGE_WIDTH = 595;
+    public static final float PAGE_HEIGHT = 842;
+
+    public enum Font {
+        REGULAR("F1"), BOLD("F2");
+
+        private final String resource;
+
+        Font(String resource) {
+            this.resource = resource;
+        }
+    }
+
+    private static final int CATALOG = 1;
+    private static final int PAGES = 2;
+    private static final int REGULAR_FONT = 3;
+    private static final int BOLD_FONT = 4;
+
+    private final OutputStream output;
+    private final ByteArrayOutputStream page = new ByteArrayOutputStream(16 * 1024);
+    private final ByteArrayOutputStream compressed = new ByteArrayOutputStream(4 * 1024);
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private long position;
+    private long[] offsets = new long[64];
+    private int[] pageIds = new int[16];
+    private int pageCount;
+    private int nextObject = BOLD_FONT + 1;
+    private boolean pageOpen;
+
+    public StreamingPdfWriter(OutputStream output) throws IOException {
+        this.output = output;
+        write("%PDF-1.4\n%âãÏÓ\n");
+        object(CATALOG, "<< /Type /Catalog /Pages " + PAGES + " 0 R >>");
+        object(REGULAR_FONT, "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>");
+        object(BOLD_FONT, "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica-Bold /Encoding /WinAnsiEncoding >>");
+    }
+
+    public void newPage() throws IOException {
+        if (pageOpen) {
+            endPage();
+        }
+        pageOpen = true;
+    }
+
+    /**
+     * Places text with its baseline starting at (x, y), measured in points from the
+     * bottom-left corner of the page.
+     */
+    public void text(float x, float y, Font font, float size, String text) throws IOException {
+        if (!pageOpen) {
+            newPage();
+        }
+        StringBuilder operators = new StringBuilder(text.length() + 48)
+                .append("BT /").append(font.resource).append(' ').append(number(size)).append(" Tf ")
+                .append(number(x)).append(' ').append(number(y)).append(" Td (");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '(' || c == ')' || c == '\\') {
+                operators.append('\\');
+            }
+            operators.append(c < 32 || c > 255 ? '?' : c);
+        }
+        page.write(operators.append(") Tj ET\n").toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    public void line(float x1, float y1, float x2, float y2) throws IOException {
+        if (!pageOpen) {
+            newPage();
+        }
+        page.write((number(x1) + " " + number(y1) + " m " + number(x2) + " " + number(y2) + " l S\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Width of text in points. Only digits and numeric punctuation are measured
+     * exactly; anything else is approximated with the average Helvetica width.
+     */
+    public static float width(String text, float size) {
+        int units = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            units += c >= '0' && c <= '9' ? 556 : c == '.' || c == ',' ? 278 : c == '-' ? 333 : c == ' ' ? 278 : 520;
+        }
+        return units * size / 1000;
+    }
+
+    /**
+     * Writes the page tree, cross-reference table and trailer. Does not close the
+     * underlying stream.
+     */
+    public void finish() throws IOException {
+        if (pageCount == 0 || pageOpen) {
+            endPage();
+        }
+        StringBuilder kids = new StringBuilder(pageCount * 8);
+        for (int i = 0; i < pageCount; i++) {
+            kids.append(pageIds[i]).append(" 0 R ");
+        }
+        object(PAGES, "<< /Type /Pages /Kids [" + kids + "] /Count " + pageCount + " >>");
+
+        long xref = position;
+        StringBuilder table = new StringBuilder(32 + nextObject * 20)
+                .append("xref\n0 ").append(nextObject).append("\n0000000000 65535 f \n");
+        for (int id = 1; id < nextObject; id++) {
+            table.append(String.format("%010d 00000 n \n", offsets[id]));
+        }
+        table.append("trailer\n<< /Size ").append(nextObject).append(" /Root ").append(CATALOG).append(" 0 R >>\n")
+                .append("startxref\n").append(xref).append("\n%%EOF\n");
+        write(table.toString());
+        output.flush();
+        deflater.end();
+    }
+
+    private void endPage() throws IOException {
+        int contentId = nextObject++;
+        int pageId = nextObject++;
+        deflater.reset();
+        try (DeflaterOutputStream deflating = new DeflaterOutputStream(compressed, deflater)) {
+            page.writeTo(deflating);
+        }
+        beginObject(contentId);
+        write("<< /Length " + compressed.size() + " /Filter /FlateDecode >>\nstream\n");
+        compressed.writeTo(output);
+        position += compressed.size();
+        write("\nendstream\nendobj\n");
+        page.reset();
+        compressed.reset();
+        object(pageId, "<< /Type /Page /Parent " + PAGES + " 0 R /MediaBox [0 0 " + number(PAGE_WIDTH) + " "
+                + number(PAGE_HEIGHT) + "] /Resources << /Font << /F1 " + REGULAR_FONT + " 0 R /F2 " + BOLD_FONT
+                + " 0 R >> >> /Contents " + contentId + " 0 R >>");
+        if (pageCount == pageIds.length) {
+            pageIds = Arrays.copyOf(pageIds, pageCount * 2);
+        }
+        pageIds[pageCount++] = pageId;
+        pageOpen = false;
+    }
+
+    private void object(int id, String body) throws IOException {
+        beginObject(id);
+        write(body + "\nendobj\n");
+    }
+
+    private void beginObject(int id) throws IOException {
+        if (id >= offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.max(id + 1, offsets.length * 2));
+        }
+        offsets[id] = position;
+        write(id + " 0 obj\n");
+    }
+
+    private void write(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        output.write(bytes);
+        position += bytes.length;
+    }
+
+    private static String number(float value) {
+        return value == (int) value ? Integer.toString((int) value) : String.format(Locale.ROOT, "%.2f", value);
+    }
+}
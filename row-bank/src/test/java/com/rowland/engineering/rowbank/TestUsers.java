@@ -0,0 +1,46 @@
+package com.rowland.engineering.rowbank;
+
+import com.rowland.engineering.rowbank.model.Role;
+import com.rowland.engineering.rowbank.model.RoleName;
+import com.rowland.engineering.rowbank.model.User;
+import com.rowland.engineering.rowbank.repository.RoleRepository;
+import com.rowland.engineering.rowbank.repository.UserRepository;
+import com.rowland.engineering.rowbank.service.AccountNumberAllocator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestComponent;
+
+import java.math.BigDecimal;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Saves customer accounts for tests that drive services against the embedded
+ * database. Usernames carry a JVM-wide sequence number, so they never collide on
+ * the unique username and email columns. Add it with {@code @Import(TestUsers.class)}.
+ */
+@TestComponent
+public class TestUsers {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private RoleRepository roleRepository;
+    @Autowired
+    private AccountNumberAllocator accountNumberAllocator;
+
+    public User create(String name) {
+        return create(name, "1000");
+    }
+
+    public User create(String name, String openingBalance) {
+        Role role = roleRepository.findByName(RoleName.ROLE_USER).orElseThrow();
+        String username = name + SEQUENCE.incrementAndGet();
+        User user = new User("Test", "Customer", null, username, username + "@example.com",
+                "{noop}unused", openingBalance == null ? null : new BigDecimal(openingBalance));
+        user.setAccountNumber(accountNumberAllocator.nextAccountNumber());
+        user.setRoles(Set.of(role));
+        return userRepository.save(user);
+    }
+}
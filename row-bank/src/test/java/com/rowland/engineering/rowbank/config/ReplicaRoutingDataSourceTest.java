@@ -0,0 +1,119 @@
+package com.rowland.engineering.rowbank.config;
+
+import com.rowland.engineering.rowbank.security.UserPrincipal;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Routes against two embedded H2 databases, each holding its own name, so every
+ * read shows which database answered it.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private ReadYourWritesWindow window;
+    private SwitchableDataSource replica;
+    private ReplicaRoutingDataSource routing;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primary = database("primary");
+        replica = new SwitchableDataSource(database("replica"));
+        window = new ReadYourWritesWindow(60_000, 100);
+        routing = new ReplicaRoutingDataSource(primary, Map.of("replica-0", replica), window);
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void readOnlyTransactionsGoToTheReplica() {
+        assertEquals("replica", readOnly.execute(status -> nodeName()));
+        assertEquals("primary", readWrite.execute(status -> nodeName()));
+    }
+
+    @Test
+    void recentWriterReadsFromThePrimary() {
+        signIn(7L);
+        window.markWrite(7L);
+        assertEquals("primary", readOnly.execute(status -> nodeName()));
+
+        signIn(8L);
+        assertEquals("replica", readOnly.execute(status -> nodeName()));
+    }
+
+    @Test
+    void unreachableReplicaFallsBackUntilHealthy() {
+        replica.down = true;
+        assertEquals("primary", readOnly.execute(status -> nodeName()));
+        assertEquals(0, routing.healthyReplicas());
+
+        replica.down = false;
+        assertEquals("primary", readOnly.execute(status -> nodeName()));
+        routing.checkReplicas();
+        assertEquals(1, routing.healthyReplicas());
+        assertEquals("replica", readOnly.execute(status -> nodeName()));
+    }
+
+    private String nodeName() {
+        return jdbcTemplate.queryForObject("select name from node", String.class);
+    }
+
+    private static void signIn(Long userId) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(new UserPrincipal(userId), null, List.of()));
+    }
+
+    private static DataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:routing-" + name + "-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate setup = new JdbcTemplate(dataSource);
+        setup.execute("create table node (name varchar(20))");
+        setup.update("insert into node values (?)", name);
+        return dataSource;
+    }
+
+    private static final class SwitchableDataSource extends DelegatingDataSource {
+        private volatile boolean down;
+
+        private SwitchableDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (down) {
+                throw new SQLException("Replica unreachable");
+            }
+            return super.getConnection();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.rowland.engineering.rowbank.controller;
+
+import com.rowland.engineering.rowbank.model.Role;
+import com.rowland.engineering.rowbank.model.RoleName;
+import com.rowland.engineering.rowbank.model.User;
+import com.rowland.engineering.rowbank.repository.RoleRepository;
+import com.rowland.engineering.rowbank.repository.UserRepository;
+import com.rowland.engineering.rowbank.security.JwtTokenProvider;
+import com.rowland.engineering.rowbank.security.UserPrincipal;
+import com.rowland.engineering.rowbank.service.AccountNumberAllocator;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Pins the number of SQL statements the hot endpoints issue, so a lazy association
+ * that starts loading row by row fails the build instead of production.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class QueryCountTest {
+
+    private static final String PASSWORD = "secret-password";
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private RoleRepository roleRepository;
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+    @Autowired
+    private AccountNumberAllocator accountNumberAllocator;
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void signinLoadsUserWithRolesAndStoresRefreshToken() throws Exception {
+        User user = createUser();
+
+        statistics.clear();
+        mockMvc.perform(post("/api/auth/signin")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"usernameOrEmail\":\"" + user.getUsername() + "\",\"password\":\"" + PASSWORD + "\"}"))
+                .andExpect(status().isOk());
+
+        // The user with roles, and the refresh token insert.
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void profileReadIssuesBoundedStatements() throws Exception {
+        User user = createUser();
+        String bearer = "Bearer " + tokenProvider.generateToken(
+                new UsernamePasswordAuthenticationToken(UserPrincipal.create(user), null));
+
+        // Cold: principal, profile with roles, and the ledger balance.
+        statistics.clear();
+        mockMvc.perform(get("/api/users/{id}", user.getId()).header(HttpHeaders.AUTHORIZATION, bearer))
+                .andExpect(status().isOk());
+        assertEquals(3, statistics.getPrepareStatementCount());
+
+        // Warm: principal and balance are served from memory.
+        statistics.clear();
+        mockMvc.perform(get("/api/users/{id}", user.getId()).header(HttpHeaders.AUTHORIZATION, bearer))
+                .andExpect(status().isOk());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void unchangedProfileAnswersNotModifiedAfterOneProbe() throws Exception {
+        User user = createUser();
+        String bearer = "Bearer " + tokenProvider.generateToken(
+                new UsernamePasswordAuthenticationToken(UserPrincipal.create(user), null));
+        String etag = mockMvc.perform(get("/api/users/{id}", user.getId()).header(HttpHeaders.AUTHORIZATION, bearer))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        statistics.clear();
+        mockMvc.perform(get("/api/users/{id}", user.getId())
+                        .header(HttpHeaders.AUTHORIZATION, bearer)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void batchLoadFetchesRolesWithUsers() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(createUser().getId());
+        }
+
+        statistics.clear();
+        List<User> users = userRepository.findByIdIn(ids);
+        users.forEach(user -> user.getRoles().size());
+
+        assertEquals(ids.size(), users.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    private User createUser() {
+        Role role = roleRepository.findByName(RoleName.ROLE_USER).orElseThrow();
+        String username = "plan" + SEQUENCE.incrementAndGet() + "x" + (System.nanoTime() % 100_000);
+        User user = new User("Fetch", "Plan", null, username, username + "@example.com",
+                passwordEncoder.encode(PASSWORD), BigDecimal.valueOf(100));
+        user.setAccountNumber(accountNumberAllocator.nextAccountNumber());
+        user.setRoles(Set.of(role));
+        return userRepository.save(user);
+    }
+}
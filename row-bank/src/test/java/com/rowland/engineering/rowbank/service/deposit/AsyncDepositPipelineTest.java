@@ -0,0 +1,110 @@
+package com.rowland.engineering.rowbank.service.deposit;
+
+import com.rowland.engineering.rowbank.TestUsers;
+import com.rowland.engineering.rowbank.dto.DepositStatus;
+import com.rowland.engineering.rowbank.exception.UserNotFoundException;
+import com.rowland.engineering.rowbank.model.User;
+import com.rowland.engineering.rowbank.repository.TransactionRepository;
+import com.rowland.engineering.rowbank.repository.UserRepository;
+import com.rowland.engineering.rowbank.service.ledger.LedgerEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Each test runs its own pipeline over a temporary journal, leaving the context's
+ * pipeline alone; a restart is a new pipeline on the same directory.
+ */
+@SpringBootTest
+@Import(TestUsers.class)
+@ActiveProfiles("test")
+class AsyncDepositPipelineTest {
+
+    @Autowired
+    private TestUsers testUsers;
+    @Autowired
+    private LedgerEngine ledgerEngine;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @TempDir
+    Path journalDirectory;
+
+    @Test
+    void journaledDepositsAreReplayedOnceAndCommittedOnesSkipped() throws Exception {
+        User alice = testUsers.create("alice");
+        DepositJournal journal = DepositJournal.open(journalDirectory, 1 << 20, false, new ArrayList<>());
+        journal.append("committed-before-crash", alice.getId(), BigDecimal.valueOf(100));
+        journal.append("lost-in-crash", alice.getId(), BigDecimal.valueOf(200));
+        journal.close();
+        // The first record reached the ledger before the crash, the second did not.
+        LedgerEngine.await(ledgerEngine.deposit(alice.getId(), BigDecimal.valueOf(100), "Deposit",
+                "committed-before-crash", null));
+
+        AsyncDepositPipeline pipeline = pipeline();
+        pipeline.start();
+        try {
+            awaitCompleted(pipeline, alice, "lost-in-crash");
+        } finally {
+            pipeline.stop();
+        }
+        assertEquals(0, new BigDecimal("1300").compareTo(ledgerEngine.balanceOf(alice.getId())));
+
+        List<DepositJournal.Recovered> left = new ArrayList<>();
+        DepositJournal.open(journalDirectory, 1 << 20, false, left).close();
+        assertTrue(left.isEmpty());
+
+        AsyncDepositPipeline restarted = pipeline();
+        restarted.start();
+        restarted.stop();
+        assertEquals(0, new BigDecimal("1300").compareTo(ledgerEngine.balanceOf(alice.getId())));
+    }
+
+    @Test
+    void depositsForUnknownAccountsAreRefusedBeforeJournaling() throws Exception {
+        AsyncDepositPipeline pipeline = pipeline();
+        pipeline.start();
+        try {
+            assertThrows(UserNotFoundException.class, () -> pipeline.submit(Long.MAX_VALUE, BigDecimal.valueOf(100)));
+        } finally {
+            pipeline.stop();
+        }
+
+        List<DepositJournal.Recovered> left = new ArrayList<>();
+        DepositJournal.open(journalDirectory, 1 << 20, false, left).close();
+        assertTrue(left.isEmpty());
+    }
+
+    private AsyncDepositPipeline pipeline() {
+        return new AsyncDepositPipeline(ledgerEngine, transactionRepository, userRepository, new SimpleMeterRegistry(),
+                2, 64, 16, journalDirectory.toString(), 1 << 20, false, 100, 60_000);
+    }
+
+    private static void awaitCompleted(AsyncDepositPipeline pipeline, User user, String trackingId)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        Optional<DepositStatus> status;
+        while ((status = pipeline.status(user.getId(), trackingId))
+                .map(current -> current.getStatus() != DepositStatus.State.COMPLETED).orElse(true)) {
+            assertTrue(System.currentTimeMillis() < deadline, "deposit " + trackingId + " never completed");
+            Thread.sleep(10);
+        }
+        assertEquals(DepositStatus.State.COMPLETED, status.orElseThrow().getStatus());
+    }
+}
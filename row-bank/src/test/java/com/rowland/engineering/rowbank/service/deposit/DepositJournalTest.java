@@ -0,0 +1,42 @@
+package com.rowland.engineering.rowbank.service.deposit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DepositJournalTest {
+
+    @TempDir
+    Path journalDirectory;
+
+    @Test
+    void aDepositWhoseForceFailedIsNotReplayedAndTheJournalRefusesMore() throws Exception {
+        AtomicBoolean diskFailing = new AtomicBoolean();
+        DepositJournal journal = DepositJournal.open(journalDirectory, 1 << 20, channel -> {
+            if (diskFailing.get()) {
+                throw new IOException("fsync failed");
+            }
+            channel.force(false);
+        }, new ArrayList<>());
+
+        journal.append("acknowledged", 1L, BigDecimal.valueOf(100));
+        diskFailing.set(true);
+        assertThrows(IOException.class, () -> journal.append("refused", 1L, BigDecimal.valueOf(200)));
+        diskFailing.set(false);
+        assertThrows(IOException.class, () -> journal.append("after-failure", 1L, BigDecimal.valueOf(300)));
+        journal.close();
+
+        List<DepositJournal.Recovered> recovered = new ArrayList<>();
+        DepositJournal.open(journalDirectory, 1 << 20, false, recovered).close();
+        assertEquals(List.of("acknowledged"), recovered.stream().map(DepositJournal.Recovered::trackingId).toList());
+    }
+}
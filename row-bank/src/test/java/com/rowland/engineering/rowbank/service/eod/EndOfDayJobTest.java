@@ -0,0 +1,116 @@
+package com.rowland.engineering.rowbank.service.eod;
+
+import com.rowland.engineering.rowbank.TestUsers;
+import com.rowland.engineering.rowbank.dto.EndOfDayStatus;
+import com.rowland.engineering.rowbank.model.User;
+import com.rowland.engineering.rowbank.repository.EndOfDayChunkRepository;
+import com.rowland.engineering.rowbank.repository.EndOfDayRunRepository;
+import com.rowland.engineering.rowbank.repository.TransactionRepository;
+import com.rowland.engineering.rowbank.repository.UserRepository;
+import com.rowland.engineering.rowbank.service.ledger.LedgerEngine;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the job by hand for fixed past dates; the nightly schedule is switched off
+ * by the test profile. 2024 has 366 days, so 2% a year on 3660.00 is 0.20 a day.
+ * Accounts are backdated to the end of 2023 unless a test is about when they opened.
+ */
+@SpringBootTest
+@Import(TestUsers.class)
+@ActiveProfiles("test")
+class EndOfDayJobTest {
+
+    @Autowired
+    private TestUsers testUsers;
+    @Autowired
+    private EndOfDayJob endOfDayJob;
+    @Autowired
+    private LedgerEngine ledgerEngine;
+    @Autowired
+    private EndOfDayRunRepository endOfDayRunRepository;
+    @Autowired
+    private EndOfDayChunkRepository endOfDayChunkRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void postsInterestAndCapsTheMaintenanceFeeAtTheBalance() {
+        LocalDate businessDate = LocalDate.of(2024, 3, 1);
+        User saver = openedLastYear(testUsers.create("saver", "3660.00"));
+        User nearlyEmpty = openedLastYear(testUsers.create("empty", "3.00"));
+
+        EndOfDayStatus status = endOfDayJob.run(businessDate);
+
+        assertEquals(EndOfDayStatus.State.COMPLETED, status.state());
+        assertEquals(0, status.chunksFailed());
+        assertEquals(new BigDecimal("3655.20"), ledgerEngine.balanceOf(saver.getId()));
+        assertEquals(0, new BigDecimal("3655.20").compareTo(userRepository.findBalanceById(saver.getId()).orElseThrow()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(ledgerEngine.balanceOf(nearlyEmpty.getId())));
+        assertEquals(2, postingsFor(businessDate, saver).size());
+        assertEquals(1, postingsFor(businessDate, nearlyEmpty).size());
+    }
+
+    @Test
+    void rerunningADateNeverPostsTwice() {
+        LocalDate businessDate = LocalDate.of(2024, 3, 2);
+        User saver = openedLastYear(testUsers.create("rerun", "3660.00"));
+        endOfDayJob.run(businessDate);
+        assertEquals(new BigDecimal("3660.20"), ledgerEngine.balanceOf(saver.getId()));
+
+        // A completed run is not repeated.
+        assertEquals(EndOfDayStatus.State.COMPLETED, endOfDayJob.run(businessDate).state());
+        // Nor is one that lost its checkpoints, as if it had crashed before writing them.
+        endOfDayChunkRepository.deleteAll();
+        endOfDayRunRepository.deleteById(businessDate);
+        EndOfDayStatus resumed = endOfDayJob.run(businessDate);
+
+        assertEquals(EndOfDayStatus.State.COMPLETED, resumed.state());
+        assertTrue(resumed.accountsSkipped() > 0);
+        assertEquals(new BigDecimal("3660.20"), ledgerEngine.balanceOf(saver.getId()));
+        assertEquals(1, postingsFor(businessDate, saver).size());
+    }
+
+    @Test
+    void interestIsEarnedOnTheBalanceAtTheCloseOfTheBusinessDate() {
+        LocalDate businessDate = LocalDate.of(2024, 3, 3);
+        User saver = openedLastYear(testUsers.create("saver", "3660.00"));
+        // Opened today, after the business date closed, so it had no balance that day.
+        User late = testUsers.create("late", "3660.00");
+        // Made today, so they earn nothing for the business date either.
+        LedgerEngine.await(ledgerEngine.deposit(saver.getId(), new BigDecimal("3660.00"), "Deposit"));
+        LedgerEngine.await(ledgerEngine.deposit(late.getId(), new BigDecimal("3660.00"), "Deposit"));
+
+        endOfDayJob.run(businessDate);
+
+        assertEquals(new BigDecimal("7320.20"), ledgerEngine.balanceOf(saver.getId()));
+        assertEquals(new BigDecimal("7320.00"), ledgerEngine.balanceOf(late.getId()));
+        assertTrue(postingsFor(businessDate, late).isEmpty());
+    }
+
+    private User openedLastYear(User user) {
+        jdbcTemplate.update("update users_table set created_at = ? where id = ?",
+                Timestamp.valueOf("2023-12-31 00:00:00"), user.getId());
+        return user;
+    }
+
+    private List<String> postingsFor(LocalDate businessDate, User user) {
+        return transactionRepository.findExistingReferences(List.of(EndOfDayJob.reference(businessDate, user.getId())));
+    }
+}
@@ -0,0 +1,208 @@
+package com.rowland.engineering.rowbank.service.ledger;
+
+import com.rowland.engineering.rowbank.exception.AppException;
+import com.rowland.engineering.rowbank.exception.BadRequestException;
+import com.rowland.engineering.rowbank.model.LedgerMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LedgerEngineTest {
+
+    private static final long MERCHANT = 1L;
+    private static final int CUSTOMERS = 16;
+    private static final BigDecimal OPENING_BALANCE = BigDecimal.valueOf(10_000);
+
+    private final Map<Long, BigDecimal> database = new ConcurrentHashMap<>();
+    private InMemoryLedgerWriter writer;
+    private LedgerEngine ledgerEngine;
+
+    @BeforeEach
+    void setUp() {
+        database.put(MERCHANT, BigDecimal.ZERO);
+        for (long id = 2; id < 2 + CUSTOMERS; id++) {
+            database.put(id, OPENING_BALANCE);
+        }
+        writer = new InMemoryLedgerWriter(database);
+        ledgerEngine = new LedgerEngine(writer, 8, 1024, 64, 2,
+                100, 60_000, new SimpleMeterRegistry());
+        ledgerEngine.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        ledgerEngine.stop();
+    }
+
+    @Test
+    @Timeout(60)
+    void concurrentTransfersConserveTotalBalance() throws Exception {
+        BigDecimal totalBefore = total();
+        int threads = 16;
+        int transfersPerThread = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<CompletableFuture<String>> transfers = new CopyOnWriteArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                start.await();
+                for (int i = 0; i < transfersPerThread; i++) {
+                    long from = 2 + random.nextInt(CUSTOMERS);
+                    // Every other transfer goes to the hot merchant account; the rest
+                    // run between customer pairs in both directions.
+                    long to = i % 2 == 0 ? MERCHANT : 2 + random.nextInt(CUSTOMERS);
+                    if (to == from) {
+                        continue;
+                    }
+                    try {
+                        transfers.add(ledgerEngine.transfer(from, to, BigDecimal.valueOf(50 + random.nextInt(500)), "test"));
+                    } catch (BadRequestException insufficientFunds) {
+                        // Expected once customers run dry.
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        CompletableFuture.allOf(transfers.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+
+        assertEquals(0, totalBefore.compareTo(total()), "total balance must be conserved");
+        database.forEach((id, balance) -> {
+            assertTrue(balance.signum() >= 0, "account " + id + " went negative");
+            assertEquals(0, balance.compareTo(ledgerEngine.balanceOf(id)), "account " + id + " drifted");
+        });
+        assertTrue(database.get(MERCHANT).signum() > 0);
+    }
+
+    @Test
+    @Timeout(10)
+    void transferBeyondBalanceIsRejected() {
+        BigDecimal tooMuch = OPENING_BALANCE.add(BigDecimal.ONE);
+
+        assertThrows(BadRequestException.class, () -> ledgerEngine.transfer(2L, 3L, tooMuch, "test"));
+        assertEquals(0, OPENING_BALANCE.compareTo(ledgerEngine.balanceOf(2L)));
+        assertEquals(0, OPENING_BALANCE.compareTo(ledgerEngine.balanceOf(3L)));
+    }
+
+    @Test
+    @Timeout(10)
+    void invalidatedBalanceIsReloadedFromTheDatabase() {
+        LedgerEngine.await(ledgerEngine.deposit(2L, BigDecimal.valueOf(100), "test"));
+        database.put(2L, BigDecimal.valueOf(75));
+
+        assertEquals(0, OPENING_BALANCE.add(BigDecimal.valueOf(100)).compareTo(ledgerEngine.balanceOf(2L)));
+        ledgerEngine.invalidate(2L);
+        assertEquals(0, BigDecimal.valueOf(75).compareTo(ledgerEngine.balanceOf(2L)));
+        assertThrows(BadRequestException.class, () -> ledgerEngine.transfer(2L, 3L, BigDecimal.valueOf(80), "test"));
+    }
+
+    @Test
+    @Timeout(10)
+    void operationsAfterStopFailInsteadOfWaiting() throws InterruptedException {
+        ledgerEngine.stop();
+
+        assertThrows(AppException.class, () -> ledgerEngine.deposit(2L, BigDecimal.valueOf(100), "test"));
+        assertEquals(0, OPENING_BALANCE.compareTo(ledgerEngine.balanceOf(2L)));
+    }
+
+    @Test
+    @Timeout(10)
+    void batchFailingMidwayIsRetriedWithoutApplyingTwice() {
+        CountDownLatch release = writer.holdNextBatch();
+        List<CompletableFuture<Void>> deposits = new ArrayList<>();
+        for (int i = 0; i < 21; i++) {
+            deposits.add(ledgerEngine.deposit(MERCHANT, BigDecimal.valueOf(100), "test"));
+        }
+        writer.failNextBatchMidway();
+        release.countDown();
+
+        deposits.forEach(LedgerEngine::await);
+        assertEquals(0, BigDecimal.valueOf(2_100).compareTo(database.get(MERCHANT)));
+        assertEquals(0, database.get(MERCHANT).compareTo(ledgerEngine.balanceOf(MERCHANT)));
+    }
+
+    private BigDecimal total() {
+        return database.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    // Applies batches to a map the way the database applies the guarded balance
+    // updates: a batch commits as a whole or not at all.
+    private static final class InMemoryLedgerWriter extends LedgerWriter {
+        private final Map<Long, BigDecimal> database;
+        private volatile CountDownLatch held;
+        private final AtomicInteger batchFailures = new AtomicInteger();
+
+        private InMemoryLedgerWriter(Map<Long, BigDecimal> database) {
+            super(null, null, null, null, null, null, LedgerMode.MUTABLE, false, 1);
+            this.database = database;
+        }
+
+        // Keeps the next batch waiting until the returned latch is released.
+        private CountDownLatch holdNextBatch() {
+            held = new CountDownLatch(1);
+            return held;
+        }
+
+        // Fails the next batch of more than one operation after part of it was staged.
+        private void failNextBatchMidway() {
+            batchFailures.incrementAndGet();
+        }
+
+        @Override
+        public void applyModeChange() {
+        }
+
+        @Override
+        public BigDecimal loadBalance(Long accountId) {
+            return database.get(accountId);
+        }
+
+        @Override
+        public synchronized void apply(List<LedgerOperation> batch) {
+            CountDownLatch latch = held;
+            if (latch != null) {
+                held = null;
+                try {
+                    latch.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new AppException("Interrupted", ex);
+                }
+            }
+            Map<Long, BigDecimal> staged = new HashMap<>();
+            int entries = 0;
+            for (LedgerOperation operation : batch) {
+                for (LedgerEntry entry : operation.getEntries()) {
+                    if (entries++ > 0 && batch.size() > 1 && batchFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                        throw new AppException("Injected failure after " + (entries - 1) + " entries");
+                    }
+                    BigDecimal updated = staged.getOrDefault(entry.getAccountId(), database.get(entry.getAccountId()))
+                            .add(entry.signedAmount());
+                    if (updated.signum() < 0) {
+                        throw new AppException("Account " + entry.getAccountId() + " has insufficient funds");
+                    }
+                    staged.put(entry.getAccountId(), updated);
+                }
+            }
+            database.putAll(staged);
+        }
+    }
+}
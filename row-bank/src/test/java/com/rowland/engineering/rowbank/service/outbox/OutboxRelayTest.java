@@ -0,0 +1,91 @@
+package com.rowland.engineering.rowbank.service.outbox;
+
+import com.rowland.engineering.rowbank.TestUsers;
+import com.rowland.engineering.rowbank.dto.OutboxMessage;
+import com.rowland.engineering.rowbank.model.TransactionType;
+import com.rowland.engineering.rowbank.model.User;
+import com.rowland.engineering.rowbank.repository.OutboxEventRepository;
+import com.rowland.engineering.rowbank.service.ledger.LedgerEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the relay by hand against the embedded database; the scheduled pass is
+ * pushed out by the test profile.
+ */
+@SpringBootTest
+@Import(TestUsers.class)
+@ActiveProfiles("test")
+class OutboxRelayTest {
+
+    @Autowired
+    private TestUsers testUsers;
+    @Autowired
+    private LedgerEngine ledgerEngine;
+    @Autowired
+    private OutboxRelay outboxRelay;
+    @Autowired
+    private InMemoryOutboxSink sink;
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @BeforeEach
+    void setUp() {
+        outboxRelay.relay();
+        sink.clear();
+    }
+
+    @Test
+    void ledgerEntriesArePublishedOnceCommittedInOrderPerAccount() {
+        User alice = testUsers.create("alice");
+        User bob = testUsers.create("bob");
+        for (int i = 0; i < 5; i++) {
+            LedgerEngine.await(ledgerEngine.deposit(alice.getId(), BigDecimal.valueOf(100 + i), "Deposit"));
+        }
+        String reference = LedgerEngine.await(ledgerEngine.transfer(alice.getId(), bob.getId(), BigDecimal.valueOf(60), "Lunch"));
+
+        // Written with the ledger rows, before any relay pass.
+        assertEquals(7, outboxEventRepository.count());
+
+        outboxRelay.relay();
+
+        assertEquals(0, outboxEventRepository.count());
+        List<OutboxMessage> aliceEvents = eventsFor(alice);
+        assertEquals(6, aliceEvents.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(TransactionType.CREDIT, aliceEvents.get(i).transactionType());
+            assertEquals(0, BigDecimal.valueOf(100 + i).compareTo(aliceEvents.get(i).amount()));
+        }
+        assertEquals(TransactionType.DEBIT, aliceEvents.get(5).transactionType());
+        assertEquals(reference, aliceEvents.get(5).reference());
+        for (int i = 1; i < aliceEvents.size(); i++) {
+            assertTrue(aliceEvents.get(i).eventId() > aliceEvents.get(i - 1).eventId());
+        }
+        List<OutboxMessage> bobEvents = eventsFor(bob);
+        assertEquals(1, bobEvents.size());
+        assertEquals(TransactionType.CREDIT, bobEvents.get(0).transactionType());
+    }
+
+    @Test
+    void relayPassWithNothingPendingPublishesNothing() {
+        outboxRelay.relay();
+
+        assertTrue(sink.getMessages().isEmpty());
+    }
+
+    private List<OutboxMessage> eventsFor(User user) {
+        return sink.getMessages().stream()
+                .filter(message -> message.accountId().equals(user.getId()))
+                .toList();
+    }
+}
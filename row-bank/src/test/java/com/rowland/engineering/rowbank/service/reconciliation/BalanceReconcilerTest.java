@@ -0,0 +1,114 @@
+package com.rowland.engineering.rowbank.service.reconciliation;
+
+import com.rowland.engineering.rowbank.TestUsers;
+import com.rowland.engineering.rowbank.dto.ReconciliationReport;
+import com.rowland.engineering.rowbank.dto.ReconciliationSummary;
+import com.rowland.engineering.rowbank.model.User;
+import com.rowland.engineering.rowbank.service.ledger.LedgerEngine;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drift is simulated by changing a stored balance behind the ledger's back; the
+ * scheduled runs are pushed out by the test profile.
+ */
+@SpringBootTest
+@Import(TestUsers.class)
+@ActiveProfiles("test")
+class BalanceReconcilerTest {
+
+    @Autowired
+    private TestUsers testUsers;
+    @Autowired
+    private BalanceReconciler balanceReconciler;
+    @Autowired
+    private LedgerEngine ledgerEngine;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void incrementalRunRechecksOnlyTouchedAccountsAndReportsTheirDrift() {
+        User alice = testUsers.create("alice");
+        User bob = testUsers.create("bob");
+        LedgerEngine.await(ledgerEngine.deposit(alice.getId(), BigDecimal.valueOf(100), "Deposit"));
+        LedgerEngine.await(ledgerEngine.transfer(alice.getId(), bob.getId(), BigDecimal.valueOf(60), "Lunch"));
+
+        ReconciliationSummary sweep = balanceReconciler.reconcile(ReconciliationSummary.Mode.FULL);
+        assertTrue(sweep.complete());
+        assertTrue(mismatchOf(alice).isEmpty());
+        assertTrue(mismatchOf(bob).isEmpty());
+
+        drift(alice, "1.00");
+        LedgerEngine.await(ledgerEngine.deposit(alice.getId(), BigDecimal.valueOf(50), "Deposit"));
+        ReconciliationSummary incremental = balanceReconciler.reconcile(ReconciliationSummary.Mode.INCREMENTAL);
+
+        assertEquals(ReconciliationSummary.Mode.INCREMENTAL, incremental.mode());
+        assertEquals(1, incremental.accountsChecked());
+        assertEquals(1, incremental.mismatchesFound());
+        ReconciliationReport.Mismatch mismatch = mismatchOf(alice).orElseThrow();
+        assertEquals(0, new BigDecimal("1.00").compareTo(mismatch.difference()));
+        assertEquals(0, new BigDecimal("1090.00").compareTo(mismatch.expectedBalance()));
+        assertTrue(mismatchOf(bob).isEmpty());
+    }
+
+    @Test
+    void driftOnAnUntouchedAccountIsFoundByTheNextFullSweep() {
+        User carol = testUsers.create("carol");
+        balanceReconciler.reconcile(ReconciliationSummary.Mode.FULL);
+
+        drift(carol, "-2.50");
+        balanceReconciler.reconcile(ReconciliationSummary.Mode.INCREMENTAL);
+        assertTrue(mismatchOf(carol).isEmpty());
+
+        balanceReconciler.reconcile(ReconciliationSummary.Mode.FULL);
+        assertEquals(0, new BigDecimal("-2.50").compareTo(mismatchOf(carol).orElseThrow().difference()));
+        assertTrue(balanceReconciler.report(1000).mismatchedAccounts() > 0);
+    }
+
+    @Test
+    void accountsWithoutAnOpeningBalanceAreBaselinedByTheFirstFullSweep() {
+        User legacy = testUsers.create("legacy");
+        LedgerEngine.await(ledgerEngine.deposit(legacy.getId(), BigDecimal.valueOf(100), "Deposit"));
+        jdbcTemplate.update("update users_table set opening_balance = null where id = ?", legacy.getId());
+
+        balanceReconciler.reconcile(ReconciliationSummary.Mode.FULL);
+
+        assertTrue(mismatchOf(legacy).isEmpty());
+        assertEquals(0, new BigDecimal("1000").compareTo(jdbcTemplate.queryForObject(
+                "select opening_balance from users_table where id = ?", BigDecimal.class, legacy.getId())));
+    }
+
+    @Test
+    void driftOnANewAccountOpenedWithoutABalanceIsReported() {
+        User fresh = testUsers.create("fresh", null);
+
+        drift(fresh, "5.00");
+        balanceReconciler.reconcile(ReconciliationSummary.Mode.FULL);
+
+        ReconciliationReport.Mismatch mismatch = mismatchOf(fresh).orElseThrow();
+        assertEquals(0, BigDecimal.ZERO.compareTo(mismatch.expectedBalance()));
+        assertEquals(0, new BigDecimal("5.00").compareTo(mismatch.difference()));
+    }
+
+    private void drift(User user, String amount) {
+        jdbcTemplate.update("update users_table set balance = coalesce(balance, 0) + ? where id = ?",
+                new BigDecimal(amount), user.getId());
+        ledgerEngine.invalidate(user.getId());
+    }
+
+    private Optional<ReconciliationReport.Mismatch> mismatchOf(User user) {
+        return balanceReconciler.report(1000).mismatches().stream()
+                .filter(mismatch -> mismatch.userId().equals(user.getId()))
+                .findFirst();
+    }
+}
@@ -0,0 +1,170 @@
+package com.rowland.engineering.rowbank.service.shard;
+
+import com.rowland.engineering.rowbank.exception.BadRequestException;
+import com.rowland.engineering.rowbank.model.TransactionType;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Three embedded H2 shards and a directory database, with a fourth shard added
+ * part way through to exercise rebalancing.
+ */
+class ShardedAccountStoreTest {
+
+    private static final BigDecimal OPENING = new BigDecimal("1000.00");
+
+    private ShardDirectory directory;
+    private List<Shard> shards;
+    private ShardedAccountStore store;
+    private List<ShardDirectory.Entry> accounts;
+
+    @BeforeEach
+    void setUp() {
+        directory = new ShardDirectory(database("directory"));
+        directory.createSchema();
+        shards = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Shard shard = new Shard(i, database("shard-" + i));
+            shard.createSchema();
+            shards.add(shard);
+        }
+        store = new ShardedAccountStore(directory, shards);
+        accounts = IntStream.range(0, 60)
+                .mapToObj(i -> store.openAccount("user" + i, "user" + i + "@rowbank.com",
+                        String.format("%010d", 7_000_000_000L + i * 7919L), "First", "Last", OPENING))
+                .toList();
+    }
+
+    @Test
+    void accountsAreSpreadAcrossShardsAndFoundThroughTheDirectory() {
+        for (Shard shard : shards) {
+            Integer count = shard.jdbc().queryForObject("select count(*) from users_table", Integer.class);
+            assertTrue(count != null && count > 0, "shard " + shard.getId() + " holds no accounts");
+        }
+        ShardDirectory.Entry account = accounts.get(17);
+        assertEquals(account, store.findByUsernameOrEmail("user17@rowbank.com").orElseThrow());
+        assertEquals(account, store.findByAccountNumber(account.accountNumber()).orElseThrow());
+        assertEquals(OPENING, store.balanceOf(account.userId()));
+    }
+
+    @Test
+    void crossShardTransferMovesMoneyAndConservesTheTotal() {
+        ShardDirectory.Entry from = accounts.get(0);
+        ShardDirectory.Entry to = onOtherShard(from);
+
+        String reference = store.transfer(from.userId(), to.userId(), new BigDecimal("400.00"), "rent");
+
+        assertEquals(new BigDecimal("600.00"), store.balanceOf(from.userId()));
+        assertEquals(new BigDecimal("1400.00"), store.balanceOf(to.userId()));
+        assertEquals(TransactionType.DEBIT, store.transactionsOf(from.userId()).get(0).type());
+        assertEquals(reference, store.transactionsOf(to.userId()).get(0).reference());
+        assertEquals(ShardDirectory.TransferState.COMPLETED, directory.transferState(reference).orElseThrow());
+        assertEquals(OPENING.multiply(BigDecimal.valueOf(accounts.size())), total());
+    }
+
+    @Test
+    void insufficientFundsAbortsWithoutMovingMoney() {
+        ShardDirectory.Entry from = accounts.get(0);
+        ShardDirectory.Entry to = onOtherShard(from);
+
+        assertThrows(BadRequestException.class,
+                () -> store.transfer(from.userId(), to.userId(), new BigDecimal("5000.00"), "too much"));
+
+        assertEquals(OPENING, store.balanceOf(from.userId()));
+        assertEquals(OPENING, store.balanceOf(to.userId()));
+        assertTrue(store.transactionsOf(from.userId()).isEmpty());
+    }
+
+    @Test
+    void amountsBelowTheLedgerMinimumAreRejected() {
+        ShardDirectory.Entry from = accounts.get(0);
+        ShardDirectory.Entry to = onOtherShard(from);
+
+        assertThrows(BadRequestException.class, () -> store.deposit(from.userId(), new BigDecimal("-10.00"), "refund", null));
+        assertThrows(BadRequestException.class, () -> store.deposit(from.userId(), new BigDecimal("49.99"), "tip", null));
+        assertThrows(BadRequestException.class, () -> store.transfer(from.userId(), to.userId(), BigDecimal.ZERO, "nothing"));
+
+        assertEquals(OPENING, store.balanceOf(from.userId()));
+        assertEquals(OPENING, store.balanceOf(to.userId()));
+    }
+
+    @Test
+    void recoveryCompletesCommittedTransfersAndAbortsStalledOnes() {
+        ShardDirectory.Entry from = accounts.get(0);
+        ShardDirectory.Entry to = onOtherShard(from);
+        BigDecimal amount = new BigDecimal("250.00");
+        // Both sides prepared; the coordinator died after deciding to commit.
+        prepared("t-committed", from, to, amount);
+        directory.transitionTransfer("t-committed", ShardDirectory.TransferState.PREPARING, ShardDirectory.TransferState.COMMITTED);
+        // Both sides prepared; the coordinator died before deciding.
+        prepared("t-stalled", from, to, amount);
+
+        assertEquals(2, store.getCoordinator().recover(Instant.now().plusSeconds(1)));
+
+        assertEquals(new BigDecimal("750.00"), store.balanceOf(from.userId()));
+        assertEquals(new BigDecimal("1250.00"), store.balanceOf(to.userId()));
+        assertEquals(ShardDirectory.TransferState.COMPLETED, directory.transferState("t-committed").orElseThrow());
+        assertEquals(ShardDirectory.TransferState.ABORTED, directory.transferState("t-stalled").orElseThrow());
+        assertEquals(1, store.transactionsOf(to.userId()).size());
+    }
+
+    @Test
+    void addingAShardMovesOnlyItsAccountsAndKeepsTheirHistory() {
+        ShardDirectory.Entry from = accounts.get(0);
+        ShardDirectory.Entry to = onOtherShard(from);
+        store.transfer(from.userId(), to.userId(), new BigDecimal("100.00"), "before rebalance");
+
+        ShardRebalancer rebalancer = new ShardRebalancer(directory, store);
+        rebalancer.addShard(3, database("shard-3"));
+        ShardRebalancer.Result result = rebalancer.rebalance();
+
+        assertTrue(result.moved() > 0);
+        assertTrue(result.moved() < accounts.size() / 2, "consistent hashing should move about a quarter");
+        assertEquals(0, result.skipped());
+        ShardRouter router = store.getRouter();
+        for (ShardDirectory.Entry account : accounts) {
+            assertEquals(router.shardFor(account.accountNumber()), directory.find(account.userId()).orElseThrow().shardId());
+        }
+        assertEquals(OPENING.multiply(BigDecimal.valueOf(accounts.size())), total());
+        assertEquals(new BigDecimal("900.00"), store.balanceOf(from.userId()));
+        assertEquals(1, store.transactionsOf(from.userId()).size());
+        assertEquals(1, store.transactionsOf(to.userId()).size());
+    }
+
+    private ShardDirectory.Entry onOtherShard(ShardDirectory.Entry account) {
+        return accounts.stream().filter(other -> other.shardId() != account.shardId()).findFirst().orElseThrow();
+    }
+
+    private void prepared(String transferId, ShardDirectory.Entry from, ShardDirectory.Entry to, BigDecimal amount) {
+        directory.logTransfer(transferId, from.userId(), to.userId(), amount, "recovered");
+        Shard source = store.shard(from.shardId());
+        ShardedAccountStore.debit(source, from.userId(), amount);
+        source.jdbc().update("insert into shard_transfer_participants values (?, ?, ?, 'PREPARED')", transferId, from.userId(), amount);
+        Shard target = store.shard(to.shardId());
+        assertNotEquals(source, target);
+        target.jdbc().update("insert into shard_transfer_participants values (?, ?, ?, 'PREPARED')", transferId, to.userId(), amount);
+    }
+
+    private BigDecimal total() {
+        return accounts.stream().map(account -> store.balanceOf(account.userId())).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static DataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + "-" + System.nanoTime() + ";NON_KEYWORDS=TIMESTAMP;DB_CLOSE_DELAY=-1");
+        return dataSource;
+    }
+}
@@ -0,0 +1,42 @@
+package com.rowland.engineering.rowbank.service.statement;
+
+import com.rowland.engineering.rowbank.dto.StatementAccount;
+import com.rowland.engineering.rowbank.dto.StatementLine;
+import com.rowland.engineering.rowbank.model.TransactionType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CsvStatementWriterTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2024, 1, 1, 9, 0);
+
+    @Test
+    void writesRunningBalancesBetweenOpeningAndClosingSummaries() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        StatementWriter writer = StatementFormat.CSV.open(output);
+
+        writer.header(new StatementAccount("0000000042", "Ada", "Lovelace"), FROM, FROM.plusDays(1), new BigDecimal("100.00"));
+        writer.line(line(1, TransactionType.CREDIT, "50.00", "Salary, January"), new BigDecimal("150.00"));
+        writer.line(line(2, TransactionType.DEBIT, "20.00", "=HYPERLINK(\"x\")"), new BigDecimal("130.00"));
+        writer.footer(new BigDecimal("130.00"), 2);
+
+        String[] rows = output.toString(StandardCharsets.UTF_8).split("\r\n", -1);
+        assertEquals("Opening balance,100.00", rows[4]);
+        assertEquals("Date,Type,Description,Reference,Amount,Balance", rows[6]);
+        assertEquals("\"Jan 01, 2024 09:01 AM\",CREDIT,\"Salary, January\",ref-1,50.00,150.00", rows[7]);
+        assertEquals("\"Jan 01, 2024 09:02 AM\",DEBIT,\"'=HYPERLINK(\"\"x\"\")\",ref-2,-20.00,130.00", rows[8]);
+        assertEquals("Transactions,2", rows[10]);
+        assertEquals("Closing balance,130.00", rows[11]);
+    }
+
+    private static StatementLine line(long id, TransactionType type, String amount, String description) {
+        return new StatementLine(id, type, new BigDecimal(amount), FROM.plusMinutes(id), description, "ref-" + id);
+    }
+}